@@ -23,6 +23,8 @@ import java.io.*;
 import java.net.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 import net.codestory.http.compilers.*;
 import net.codestory.http.errors.*;
@@ -38,14 +40,27 @@ import net.codestory.http.websockets.*;
 import javax.net.ssl.*;
 
 public abstract class AbstractWebServer<T extends AbstractWebServer<T>> {
+  // Writes the async responses when requests run on the server's workers
+  //
+  private static final Executor ASYNC_WRITERS = RequestExecutors.unbounded();
+
   protected final Env env;
 
   protected HttpServerWrapper server;
   protected RoutesProvider routesProvider;
+  protected ServerConfiguration serverConfiguration;
+  protected Executor requestExecutor;
+  protected long asyncTimeout;
   protected int port = -1;
 
+  private Supplier<ExecutorService> ownedExecutorFactory;
+  private ExecutorService ownedExecutor;
+
   protected AbstractWebServer() {
     this.env = createEnv();
+    this.serverConfiguration = ServerConfiguration.of(env);
+    this.asyncTimeout = env.asyncTimeout();
+    executeOnOwnedExecutor(() -> RequestExecutors.of(env.executionMode()));
   }
 
   protected abstract HttpServerWrapper createHttpServer(Handler httpHandler, WebSocketHandler webSocketHandler) throws Exception;
@@ -61,6 +76,37 @@ public abstract class AbstractWebServer<T extends AbstractWebServer<T>> {
     return configure(new ConfigurationReloadingProxy(configuration));
   }
 
+  public T configureServer(UnaryOperator<ServerConfiguration> configuration) {
+    this.serverConfiguration = configuration.apply(serverConfiguration);
+    return (T) this;
+  }
+
+  // Requests are handled on this executor instead of the server's workers.
+  // The worker is released as soon as the request is dispatched.
+  //
+  public T executeOn(Executor executor) {
+    shutdownOwnedExecutor();
+    this.ownedExecutorFactory = null;
+    this.requestExecutor = executor;
+    return (T) this;
+  }
+
+  public T executeOnVirtualThreads() {
+    return executeOnOwnedExecutor(RequestExecutors::virtualThreads);
+  }
+
+  public T executeOnWorkers() {
+    return executeOn(null);
+  }
+
+  // Routes returning a CompletionStage that is not completed in time
+  // get a 503 response.
+  //
+  public T asyncTimeout(long timeout, TimeUnit unit) {
+    this.asyncTimeout = unit.toMillis(timeout);
+    return (T) this;
+  }
+
   public T startOnRandomPort() {
     Random random = new Random();
     for (int i = 0; i < 30; i++) {
@@ -108,7 +154,7 @@ public abstract class AbstractWebServer<T extends AbstractWebServer<T>> {
 
   protected T startWithContext(int port, SSLContext context, boolean authReq) {
     try {
-      server = createHttpServer(this::handleHttp, this::handleWebSocket);
+      server = createHttpServer(this::dispatchHttp, this::handleWebSocket);
     } catch (Exception e) {
       throw new IllegalStateException("Unable to create http server", e);
     }
@@ -118,6 +164,7 @@ public abstract class AbstractWebServer<T extends AbstractWebServer<T>> {
     }
 
     this.port = env.overriddenPort(port);
+    createOwnedExecutor();
 
     try {
       Logs.mode(env.prodMode());
@@ -150,6 +197,49 @@ public abstract class AbstractWebServer<T extends AbstractWebServer<T>> {
       server.stop();
     } catch (Exception e) {
       throw new IllegalStateException("Unable to stop the web server", e);
+    } finally {
+      shutdownOwnedExecutor();
+    }
+  }
+
+  // Executors created by the server are shut down on stop()
+  // and created again on the next start.
+  //
+  private T executeOnOwnedExecutor(Supplier<ExecutorService> factory) {
+    shutdownOwnedExecutor();
+    this.ownedExecutorFactory = factory;
+    createOwnedExecutor();
+    return (T) this;
+  }
+
+  private void createOwnedExecutor() {
+    if ((ownedExecutor == null) && (ownedExecutorFactory != null)) {
+      ownedExecutor = ownedExecutorFactory.get();
+      requestExecutor = ownedExecutor;
+    }
+  }
+
+  private void shutdownOwnedExecutor() {
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+      if (requestExecutor == ownedExecutor) {
+        requestExecutor = null;
+      }
+      ownedExecutor = null;
+    }
+  }
+
+  protected void dispatchHttp(Request request, Response response) {
+    Executor executor = requestExecutor;
+    if (executor == null) {
+      handleHttp(request, response);
+      return;
+    }
+
+    try {
+      executor.execute(() -> handleHttp(request, response));
+    } catch (RejectedExecutionException e) {
+      handleHttp(request, response);
     }
   }
 
@@ -164,16 +254,54 @@ public abstract class AbstractWebServer<T extends AbstractWebServer<T>> {
       Context context = routes.createContext(request, response);
 
       Payload payload = routes.apply(context);
-      if (payload.isError()) {
-        payload = errorPage(payload);
+      if (AsyncPayload.isAsync(payload)) {
+        writeWhenResolved(payloadWriter, payload);
+        return;
       }
 
-      payloadWriter.writeAndClose(payload);
+      write(payloadWriter, payload);
     } catch (Exception e) {
       handleServerError(payloadWriter, e);
     }
   }
 
+  // The server thread is released right away. The response is written
+  // on the request executor, never on the thread that completes the
+  // route's future or on the single thread that handles the timeouts.
+  //
+  protected void writeWhenResolved(PayloadWriter payloadWriter, Payload pending) {
+    AsyncPayload.resolve(pending, asyncTimeout).whenCompleteAsync((payload, error) -> {
+      if (error != null) {
+        handleServerError(payloadWriter, (error instanceof Exception) ? (Exception) error : new IllegalStateException(error));
+        return;
+      }
+
+      try {
+        write(payloadWriter, payload);
+      } catch (Exception e) {
+        handleServerError(payloadWriter, e);
+      }
+    }, this::executeAsyncWrite);
+  }
+
+  private void executeAsyncWrite(Runnable write) {
+    Executor executor = (requestExecutor != null) ? requestExecutor : ASYNC_WRITERS;
+
+    try {
+      executor.execute(write);
+    } catch (RejectedExecutionException e) {
+      write.run();
+    }
+  }
+
+  private void write(PayloadWriter payloadWriter, Payload payload) throws IOException {
+    if (payload.isError()) {
+      payload = errorPage(payload);
+    }
+
+    payloadWriter.writeAndClose(payload);
+  }
+
   protected WebSocketListener handleWebSocket(Request request, Response response) {
     // TODO: Error handling?
     RouteCollection routes = routesProvider.get();
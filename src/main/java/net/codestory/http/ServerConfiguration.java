@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import net.codestory.http.misc.*;
+
+// Immutable settings of the http server. Defaults scale with the number
+// of cores and can be overridden with system properties or environment
+// variables, or in code through AbstractWebServer.configureServer().
+//
+// Each engine applies the settings it supports. The default Simple
+// engine ignores the backlog and the keep-alive timeout.
+//
+public class ServerConfiguration {
+  private final int workers;
+  private final int selectors;
+  private final int backlog;
+  private final int bufferSize;
+  private final int keepAliveTimeout;
+
+  public ServerConfiguration(int workers, int selectors, int backlog, int bufferSize, int keepAliveTimeout) {
+    this.workers = checkPositive("workers", workers);
+    this.selectors = checkPositive("selectors", selectors);
+    this.backlog = checkPositive("backlog", backlog);
+    this.bufferSize = checkPositive("bufferSize", bufferSize);
+    this.keepAliveTimeout = checkPositive("keepAliveTimeout", keepAliveTimeout);
+  }
+
+  public static ServerConfiguration of(Env env) {
+    return new ServerConfiguration(env.workers(), env.selectors(), env.backlog(), env.bufferSize(), env.keepAliveTimeout());
+  }
+
+  public ServerConfiguration withWorkers(int workers) {
+    return new ServerConfiguration(workers, selectors, backlog, bufferSize, keepAliveTimeout);
+  }
+
+  public ServerConfiguration withSelectors(int selectors) {
+    return new ServerConfiguration(workers, selectors, backlog, bufferSize, keepAliveTimeout);
+  }
+
+  // Ignored by the Simple engine
+  //
+  public ServerConfiguration withBacklog(int backlog) {
+    return new ServerConfiguration(workers, selectors, backlog, bufferSize, keepAliveTimeout);
+  }
+
+  public ServerConfiguration withBufferSize(int bufferSize) {
+    return new ServerConfiguration(workers, selectors, backlog, bufferSize, keepAliveTimeout);
+  }
+
+  // Ignored by the Simple engine
+  //
+  public ServerConfiguration withKeepAliveTimeout(int keepAliveTimeout) {
+    return new ServerConfiguration(workers, selectors, backlog, bufferSize, keepAliveTimeout);
+  }
+
+  // Number of threads running the request handlers
+  //
+  public int workers() {
+    return workers;
+  }
+
+  // Number of threads selecting ready sockets
+  //
+  public int selectors() {
+    return selectors;
+  }
+
+  // Maximum number of pending connections. Ignored by the Simple engine.
+  //
+  public int backlog() {
+    return backlog;
+  }
+
+  // Size, in bytes, of the buffers used to read requests
+  //
+  public int bufferSize() {
+    return bufferSize;
+  }
+
+  // Time, in seconds, an idle connection is kept open. Ignored by the
+  // Simple engine.
+  //
+  public int keepAliveTimeout() {
+    return keepAliveTimeout;
+  }
+
+  private static int checkPositive(String name, int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(name + " should be positive: " + value);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "workers=" + workers + ", selectors=" + selectors + ", backlog=" + backlog + ", bufferSize=" + bufferSize + ", keepAliveTimeout=" + keepAliveTimeout;
+  }
+}
@@ -26,8 +26,14 @@ public class WebServer extends AbstractWebServer<WebServer> {
       .start();
   }
 
+  // Set http.server=undertow to run on Undertow, with HTTP/2 support.
+  // It requires the optional io.undertow:undertow-core dependency.
+  //
   @Override
   protected HttpServerWrapper createHttpServer(Handler httpHandler, WebSocketHandler webSocketHandler) throws Exception {
-    return new SimpleServerWrapper(httpHandler, webSocketHandler);
+    if ("undertow".equals(env.serverEngine())) {
+      return new UndertowServerWrapper(httpHandler, webSocketHandler, serverConfiguration);
+    }
+    return new SimpleServerWrapper(httpHandler, webSocketHandler, serverConfiguration);
   }
 }
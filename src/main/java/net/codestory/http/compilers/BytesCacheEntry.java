@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.nio.*;
+
+// Compiled content, encoded once. The text is kept when the entry is
+// created from a String, and decoded at most once otherwise.
+//
+final class BytesCacheEntry implements CacheEntry {
+  private final byte[] data;
+  private transient String content;
+
+  BytesCacheEntry(byte[] data) {
+    this(data, null);
+  }
+
+  BytesCacheEntry(byte[] data, String content) {
+    this.data = data;
+    this.content = content;
+  }
+
+  // Two threads can decode the same bytes concurrently. Strings
+  // are immutable so either one can be kept.
+  //
+  @Override
+  public String content() {
+    String decoded = content;
+    if (decoded == null) {
+      decoded = new String(data, UTF_8);
+      content = decoded;
+    }
+    return decoded;
+  }
+
+  @Override
+  public byte[] toBytes() {
+    return data;
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(data);
+  }
+}
@@ -18,6 +18,7 @@ package net.codestory.http.compilers;
 import static java.nio.charset.StandardCharsets.*;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.file.*;
 
 public interface CacheEntry extends Serializable {
@@ -25,47 +26,18 @@ public interface CacheEntry extends Serializable {
 
   byte[] toBytes();
 
-  public static CacheEntry fromFile(File file) throws IOException {
-    byte[] data = Files.readAllBytes(file.toPath());
-
-    return new CacheEntry() {
-      @Override
-      public String content() {
-        return new String(data, UTF_8);
-      }
-
-      @Override
-      public byte[] toBytes() {
-        return data;
-      }
-    };
+  default ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(toBytes());
   }
 
-  public static CacheEntry fromString(String content) {
-    return new CacheEntry() {
-      @Override
-      public String content() {
-        return content;
-      }
-
-      @Override
-      public byte[] toBytes() {
-        return content.getBytes(UTF_8);
-      }
-    };
+  public static CacheEntry fromFile(File file) throws IOException {
+    if (file.length() >= MappedCacheEntry.MIN_SIZE) {
+      return MappedCacheEntry.map(file);
+    }
+    return new BytesCacheEntry(Files.readAllBytes(file.toPath()));
   }
 
-  public static CacheEntry noCache(String content) {
-    return new CacheEntry() {
-      @Override
-      public String content() {
-        return content;
-      }
-
-      @Override
-      public byte[] toBytes() {
-        return content.getBytes(UTF_8);
-      }
-    };
+  public static CacheEntry fromString(String content) {
+    return new BytesCacheEntry(content.getBytes(UTF_8), content);
   }
 }
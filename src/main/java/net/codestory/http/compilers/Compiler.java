@@ -16,8 +16,17 @@
 package net.codestory.http.compilers;
 
 import java.io.*;
+import java.nio.file.*;
+import java.util.function.*;
 
 @FunctionalInterface
 public interface Compiler extends Serializable {
   String compile(SourceFile sourceFile);
+
+  // Compilers that read other files, through imports or includes, report
+  // them so that the cached output is invalidated when they change.
+  //
+  default String compile(SourceFile sourceFile, Consumer<Path> dependencies) {
+    return compile(sourceFile);
+  }
 }
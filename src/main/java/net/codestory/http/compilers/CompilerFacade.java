@@ -27,6 +27,7 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.github.jknack.handlebars.Handlebars;
+import com.github.jknack.handlebars.Template;
 import com.github.jknack.handlebars.ValueResolver;
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.*;
@@ -42,7 +43,7 @@ public class CompilerFacade implements CompilersConfiguration {
     this.resources = resources;
     this.compilers = memoize(() -> new Compilers(env, resources));
     this.handlebars = memoize(() -> new HandlebarsCompiler(env, resources, this));
-    this.viewCompiler = memoize(() -> new ViewCompiler(resources, this));
+    this.viewCompiler = memoize(() -> new ViewCompiler(env.prodMode(), resources, this));
   }
 
   // Configuration
@@ -84,14 +85,42 @@ public class CompilerFacade implements CompilersConfiguration {
     return compilers.get().compile(sourceFile);
   }
 
+  public List<Path> imports(Path path) throws IOException {
+    return compilers.get().imports(resources.sourceFile(path));
+  }
+
+  public String markdown(String markdown) {
+    return compilers.get().compileMarkdown(markdown).content();
+  }
+
+  public String markdown(SourceFile sourceFile) {
+    return compilers.get().compileMarkdown(sourceFile).content();
+  }
+
   public String handlebar(String template, Map<String, ?> variables) throws IOException {
     return handlebars.get().compile(template, variables);
   }
 
+  public Template handlebarTemplate(String template) throws IOException {
+    return handlebars.get().compile(template);
+  }
+
+  public String handlebar(Template template, Map<String, ?> variables) throws IOException {
+    return handlebars.get().apply(template, variables);
+  }
+
+  public void handlebar(Template template, Map<String, ?> variables, Writer writer) throws IOException {
+    handlebars.get().apply(template, variables, writer);
+  }
+
   public String renderView(String uri, Map<String, ?> variables) {
     return viewCompiler.get().render(uri, variables);
   }
 
+  public void renderView(String uri, Map<String, ?> variables, Writer writer) {
+    viewCompiler.get().render(uri, variables, writer);
+  }
+
   public Path findPublicSourceFor(String uri) {
     String extension = extension(uri);
 
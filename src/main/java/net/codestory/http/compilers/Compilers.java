@@ -16,31 +16,71 @@
 package net.codestory.http.compilers;
 
 import net.codestory.http.io.Resources;
+import net.codestory.http.markdown.MarkdownCompiler;
 import net.codestory.http.misc.Env;
+import net.codestory.http.misc.LruCache;
 import net.codestory.http.misc.Sha1;
+import net.codestory.http.misc.SingleFlight;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static java.util.Map.Entry;
 import static net.codestory.http.misc.MemoizingSupplier.memoize;
 
+// Compiled files are cached in memory and on disk, keyed on the sha1 of
+// the source and of all the files it imports, transitively. The imports
+// found during the last compilation of a source are stored along with
+// the output so that a change in an imported file invalidates it.
+//
+// The memory cache is bounded by the total size of the outputs and
+// evicts the least recently used ones.
+//
+// Concurrent requests for the same output trigger a single compilation.
+//
+// Markdown is cached by the sha1 of its text, in its own memory cache so
+// that pages rendered on every request don't evict the compiled assets.
+// Markdown rendered after Handlebars can change on every request so it's
+// never written to disk. Markdown read as is from a file, like an include,
+// is also cached on disk.
+//
 public class Compilers {
+  private static final String IMPORTS_EXTENSION = ".imports";
+  private static final String MARKDOWN_EXTENSION = ".md";
+  private static final int MAX_SOURCES = 10_000;
+
+  private final Resources resources;
+  private final boolean prodMode;
   private final DiskCache diskCache;
   private final Map<String, Supplier<Compiler>> compilerByExtension = new HashMap<>();
   private final Map<String, Set<String>> extensionsThatCompileTo = new HashMap<>();
   private final Map<String, String> compiledExtensions = new HashMap<>();
-  private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  private final LruCache<String, CacheEntry> cache;
+  private final LruCache<String, CacheEntry> markdownCache;
+  private final LruCache<String, List<Path>> importsBySource = LruCache.ofSize(MAX_SOURCES, 0L);
+  private final LruCache<String, String> keyBySource = LruCache.ofSize(MAX_SOURCES, 0L);
+  private final SingleFlight<String, CacheEntry> compilations = new SingleFlight<>();
 
   public Compilers(Env env, Resources resources) {
-    boolean prodMode = env.prodMode();
+    this.resources = resources;
+    this.prodMode = env.prodMode();
+    this.cache = new LruCache<>(env.compilerCacheSize(), 0L, entry -> entry.toByteBuffer().remaining());
+    this.markdownCache = new LruCache<>(env.markdownCacheSize(), 0L, entry -> entry.toByteBuffer().remaining());
 
-    diskCache = new DiskCache("V6", prodMode);
+    diskCache = new DiskCache("V6", prodMode, env.diskCacheSize(), TimeUnit.DAYS.toMillis(env.diskCacheMaxAgeDays()));
     register(() -> new LessCompiler(resources, prodMode), ".css", ".less");
     register(() -> new CoffeeCompiler(prodMode), ".js", ".coffee");
     register(() -> new CoffeeCompiler(prodMode), ".js", ".litcoffee");
@@ -70,28 +110,183 @@ public class Compilers {
     return compiledExtensions.get(extension);
   }
 
+  // Statistics of the in-memory cache of compiled outputs
+
+  public int cacheSize() {
+    return cache.size();
+  }
+
+  public long cacheWeight() {
+    return cache.weight();
+  }
+
+  public double cacheHitRatio() {
+    return cache.hitRatio();
+  }
+
+  public long cacheEvictionCount() {
+    return cache.evictionCount();
+  }
+
   public CacheEntry compile(SourceFile sourceFile) {
-    String key = sourceFile.getFileName() + ';' + sourceFile.getSource();
+    for (Entry<String, Supplier<Compiler>> entry : compilerByExtension.entrySet()) {
+      String extension = entry.getKey();
+      if (!sourceFile.hasExtension(extension)) {
+        continue;
+      }
+
+      String source = sourceFile.getFileName() + ';' + sourceFile.getSource();
+      String sourceSha1 = Sha1.of(source);
 
-    return cache.computeIfAbsent(key, ignore -> {
-      for (Entry<String, Supplier<Compiler>> entry : compilerByExtension.entrySet()) {
-        String extension = entry.getKey();
-        if (!sourceFile.hasExtension(extension)) {
-          continue;
+      String key = cacheKey(source, sourceSha1);
+      if (key != null) {
+        CacheEntry cached = cache.get(key);
+        if (cached != null) {
+          return cached;
         }
+      }
 
-        Supplier<Compiler> compiler = entry.getValue();
+      Supplier<Compiler> compiler = entry.getValue();
 
-        // Hack until I find something better
-        if (".less".equals(extension) && sourceFile.getSource().contains("@import")) {
-          return CacheEntry.noCache(compiler.get().compile(sourceFile));
+      return compilations.run((key == null) ? sourceSha1 : key, () -> {
+        if (key != null) {
+          CacheEntry cached = diskCache.get(key, extension);
+          if (cached != null) {
+            cache.put(key, cached);
+            return cached;
+          }
         }
 
-        String sha1 = Sha1.of(key);
-        return diskCache.computeIfAbsent(sha1, extension, () -> compiler.get().compile(sourceFile));
+        return compile(compiler.get(), sourceFile, source, sourceSha1, extension);
+      });
+    }
+
+    throw new IllegalArgumentException("Unable to compile " + sourceFile.getFileName() + ". Unknown extension");
+  }
+
+  private CacheEntry compile(Compiler compiler, SourceFile sourceFile, String source, String sourceSha1, String extension) {
+    Set<Path> dependencies = new LinkedHashSet<>();
+    String compiled = compiler.compile(sourceFile, dependencies::add);
+
+    List<Path> imports = new ArrayList<>(dependencies);
+    storeImports(sourceSha1, imports);
+
+    String key = combinedSha1(source, imports);
+    if (key == null) {
+      // An import vanished during the compilation
+      return CacheEntry.fromString(compiled);
+    }
+
+    diskCache.put(key, extension, compiled);
+    if (prodMode) {
+      keyBySource.put(sourceSha1, key);
+    }
+
+    CacheEntry entry = CacheEntry.fromString(compiled);
+    cache.put(key, entry);
+    return entry;
+  }
+
+  // Files imported by the last compilation of a source, as far as the caches know
+  //
+  public List<Path> imports(SourceFile sourceFile) {
+    return imports(Sha1.of(sourceFile.getFileName() + ';' + sourceFile.getSource()));
+  }
+
+  public CacheEntry compileMarkdown(String markdown) {
+    String key = Sha1.of(markdown);
+
+    CacheEntry cached = markdownCache.get(key);
+    if (cached == null) {
+      cached = CacheEntry.fromString(MarkdownCompiler.INSTANCE.compile(markdown));
+      markdownCache.put(key, cached);
+    }
+    return cached;
+  }
+
+  public CacheEntry compileMarkdown(SourceFile sourceFile) {
+    String markdown = sourceFile.getSource();
+    String key = Sha1.of(markdown);
+
+    CacheEntry cached = markdownCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    return compilations.run(key + MARKDOWN_EXTENSION, () -> {
+      CacheEntry entry = diskCache.get(key, MARKDOWN_EXTENSION);
+      if (entry == null) {
+        String html = MarkdownCompiler.INSTANCE.compile(markdown);
+        diskCache.put(key, MARKDOWN_EXTENSION, html);
+        entry = CacheEntry.fromString(html);
+      }
+
+      markdownCache.put(key, entry);
+      return entry;
+    });
+  }
+
+  // In prod mode, files don't change so the key of a source is computed once
+  //
+  private String cacheKey(String source, String sourceSha1) {
+    if (prodMode) {
+      String key = keyBySource.get(sourceSha1);
+      if (key != null) {
+        return key;
+      }
+    }
+
+    String key = combinedSha1(source, imports(sourceSha1));
+    if (prodMode && (key != null)) {
+      keyBySource.put(sourceSha1, key);
+    }
+    return key;
+  }
+
+  // Returns null if one of the imports can't be read
+  //
+  private String combinedSha1(String source, List<Path> imports) {
+    if (imports.isEmpty()) {
+      return Sha1.of(source);
+    }
+
+    StringBuilder combined = new StringBuilder(source);
+    for (Path path : imports) {
+      try {
+        combined.append(';').append(Resources.toUnixString(path)).append(';').append(resources.read(path, UTF_8));
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return Sha1.of(combined.toString());
+  }
+
+  private List<Path> imports(String sourceSha1) {
+    return importsBySource.computeIfAbsent(sourceSha1, key -> {
+      CacheEntry imports = diskCache.get(key, IMPORTS_EXTENSION);
+      if (imports == null) {
+        return emptyList();
       }
 
-      throw new IllegalArgumentException("Unable to compile " + sourceFile.getFileName() + ". Unknown extension");
+      List<Path> paths = new ArrayList<>();
+      for (String path : imports.content().split("\n")) {
+        if (!path.isEmpty()) {
+          paths.add(Paths.get(path));
+        }
+      }
+      return paths;
     });
   }
+
+  private void storeImports(String sourceSha1, List<Path> imports) {
+    List<Path> previous = importsBySource.get(sourceSha1);
+    importsBySource.put(sourceSha1, imports);
+    if (imports.equals(previous) || (imports.isEmpty() && (previous == null))) {
+      return;
+    }
+
+    StringBuilder content = new StringBuilder();
+    imports.forEach(path -> content.append(Resources.toUnixString(path)).append('\n'));
+    diskCache.put(sourceSha1, IMPORTS_EXTENSION, content.toString());
+  }
 }
@@ -15,51 +15,182 @@
  */
 package net.codestory.http.compilers;
 
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.StandardCopyOption.*;
+
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 import net.codestory.http.logs.*;
 
+// Compiled files, stored on disk to survive restarts.
+//
+// Entries are written in the background, to a temporary file that is then
+// atomically moved in place, so that a reader never sees a partial entry.
+// Until it's written, an entry is served from memory.
+//
+// Entries not used for a long time, or the least recently used ones when
+// the cache grows too big, are pruned in the background, once per run.
+//
 public class DiskCache {
+  private static final long DEFAULT_MAX_SIZE = 256 * 1024 * 1024L;
+  private static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+  private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final long TMP_FILE_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "disk-cache-writer");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static final Set<File> PRUNED = ConcurrentHashMap.newKeySet();
+
   private final File root;
+  private final Map<File, String> pendingWrites;
 
   public DiskCache(String version, boolean prodMode) {
-    this.root = Paths.get(System.getProperty("user.home"), ".code-story", "cache", version, prodMode ? "prod" : "dev").toFile();
+    this(version, prodMode, DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE_MILLIS);
+  }
+
+  public DiskCache(String version, boolean prodMode, long maxSize, long maxAgeMillis) {
+    this(Paths.get(System.getProperty("user.home"), ".code-story", "cache").toFile(), version, prodMode, maxSize, maxAgeMillis);
+  }
+
+  DiskCache(File cacheFolder, String version, boolean prodMode, long maxSize, long maxAgeMillis) {
+    this.root = cacheFolder.toPath().resolve(version).resolve(prodMode ? "prod" : "dev").toFile();
+    this.pendingWrites = new ConcurrentHashMap<>();
     Logs.cachingOnDisk(this.root);
+
+    // Prunes all the versions
+    if (PRUNED.add(cacheFolder.getAbsoluteFile())) {
+      WRITER.execute(() -> prune(cacheFolder, maxSize, maxAgeMillis));
+    }
   }
 
-  CacheEntry computeIfAbsent(String sha1, String extension, Supplier<String> toCompiled) {
-    File file = new File(new File(root, extension.substring(1)), sha1);
+  CacheEntry get(String sha1, String extension) {
+    File file = file(sha1, extension);
+
+    String pending = pendingWrites.get(file);
+    if (pending != null) {
+      return CacheEntry.fromString(pending);
+    }
+
     if (file.exists()) {
       try {
-        return CacheEntry.fromFile(file);
+        CacheEntry entry = CacheEntry.fromFile(file);
+        touch(file);
+        return entry;
       } catch (IOException e) {
         // ignore cache entry
       }
     }
+    return null;
+  }
 
-    String compiled = toCompiled.get();
+  void put(String sha1, String extension, String data) {
+    File file = file(sha1, extension);
 
+    pendingWrites.put(file, data);
+    WRITER.execute(() -> {
+      try {
+        writeToCache(file, data);
+      } catch (IOException e) {
+        // ignore, the entry will be computed again
+      } finally {
+        pendingWrites.remove(file, data);
+      }
+    });
+  }
+
+  // Waits for the entries already queued to be written, before
+  // a short-lived process, like PreCompile, exits.
+  //
+  public static void awaitWrites() {
     try {
-      writeToCache(file, compiled);
-      return CacheEntry.fromString(compiled);
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
+      WRITER.submit(() -> {
+      }).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Unable to wait for the disk cache", e);
+    }
+  }
+
+  private File file(String sha1, String extension) {
+    return new File(new File(root, extension.substring(1)), sha1);
+  }
+
+  // Entries are pruned on their last modification date, so it's
+  // refreshed from time to time for entries that are in use.
+  //
+  private static void touch(File file) {
+    long now = System.currentTimeMillis();
+    if ((now - file.lastModified()) > TOUCH_INTERVAL_MILLIS) {
+      WRITER.execute(() -> file.setLastModified(now));
     }
   }
 
   private static void writeToCache(File file, String data) throws IOException {
     File parentFile = file.getParentFile();
     if (!parentFile.exists() && !parentFile.mkdirs()) {
-      throw new IllegalStateException("Unable to create cache folder: " + parentFile);
+      throw new IOException("Unable to create cache folder: " + parentFile);
     }
 
-    File tmpFile = new File(file.getAbsolutePath() + ".tmp");
-    try (Writer writer = new FileWriter(file)) {
-      writer.write(data);
+    Path tmpFile = Files.createTempFile(parentFile.toPath(), file.getName(), ".tmp");
+    try {
+      Files.write(tmpFile, data.getBytes(UTF_8));
+      try {
+        Files.move(tmpFile, file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpFile, file.toPath(), REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmpFile);
     }
+  }
+
+  static void prune(File cacheFolder, long maxSize, long maxAgeMillis) {
+    long now = System.currentTimeMillis();
 
-    tmpFile.renameTo(file);
+    List<Path> files = new ArrayList<>();
+    Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+    try {
+      Files.walkFileTree(cacheFolder.toPath(), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          files.add(file);
+          attributes.put(file, attrs);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      return;
+    }
+
+    files.sort(Comparator.comparingLong(file -> attributes.get(file).lastModifiedTime().toMillis()));
+
+    long totalSize = files.stream().mapToLong(file -> attributes.get(file).size()).sum();
+    for (Path file : files) {
+      BasicFileAttributes attrs = attributes.get(file);
+      long age = now - attrs.lastModifiedTime().toMillis();
+      boolean tmpFile = file.toString().endsWith(".tmp");
+
+      boolean expired = tmpFile ? (age > TMP_FILE_MAX_AGE_MILLIS) : (age > maxAgeMillis);
+      if (expired || (!tmpFile && (totalSize > maxSize))) {
+        try {
+          Files.deleteIfExists(file);
+          totalSize -= attrs.size();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
   }
 }
@@ -17,6 +17,9 @@ package net.codestory.http.compilers;
 
 import static com.github.sommeri.less4j.LessCompiler.*;
 
+import java.nio.file.*;
+import java.util.function.*;
+
 import com.github.sommeri.less4j.*;
 import com.github.sommeri.less4j.core.*;
 import net.codestory.http.io.Resources;
@@ -32,12 +35,18 @@ public class LessCompiler implements Compiler {
 
   @Override
   public String compile(SourceFile sourceFile) {
+    return compile(sourceFile, path -> {
+    });
+  }
+
+  @Override
+  public String compile(SourceFile sourceFile, Consumer<Path> dependencies) {
     try {
       Configuration configuration = new Configuration();
 
       configureSourceMap(configuration);
 
-      return new ThreadUnsafeLessCompiler().compile(new PathSource(resources, sourceFile), configuration).getCss();
+      return new ThreadUnsafeLessCompiler().compile(new PathSource(resources, sourceFile, dependencies), configuration).getCss();
     } catch (Less4jException e) {
       String message = cleanMessage(sourceFile, e.getMessage());
       throw new CompilerException(message);
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+// Compiled content read from the disk cache, memory-mapped so that it
+// stays off the heap.
+//
+final class MappedCacheEntry implements CacheEntry {
+  // Smaller files are cheaper to read than to map
+  static final long MIN_SIZE = 16 * 1024L;
+
+  private final transient ByteBuffer buffer;
+
+  private MappedCacheEntry(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  static MappedCacheEntry map(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+      return new MappedCacheEntry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  @Override
+  public String content() {
+    return UTF_8.decode(toByteBuffer()).toString();
+  }
+
+  @Override
+  public byte[] toBytes() {
+    byte[] data = new byte[buffer.capacity()];
+    toByteBuffer().get(data);
+    return data;
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    return buffer.duplicate();
+  }
+
+  private Object writeReplace() {
+    return new BytesCacheEntry(toBytes());
+  }
+}
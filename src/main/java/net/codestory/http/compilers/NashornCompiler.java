@@ -22,6 +22,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import net.codestory.http.io.*;
 
@@ -29,29 +30,69 @@ import javax.script.*;
 import jdk.nashorn.api.scripting.*;
 import jdk.nashorn.internal.runtime.options.*;
 
+// A bounded pool of Nashorn engines, one pool per script. A compilation
+// borrows an engine and its bindings for itself, so that compilations
+// can run in parallel, up to the number of cores.
+//
 public final class NashornCompiler {
   private static final ConcurrentMap<String, NashornCompiler> CACHE_BY_SCRIPT = new ConcurrentHashMap<>();
+  private static final int MAX_ENGINES = Runtime.getRuntime().availableProcessors();
 
-  private final CompiledScript compiledScript;
-  private final Bindings bindings;
+  private final String script;
+  private final int maxEngines;
+  private final BlockingQueue<Engine> idleEngines;
+  private final AtomicInteger engineCount;
 
-  private NashornCompiler(String script) {
-    NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
+  private NashornCompiler(String script, int maxEngines) {
+    this.script = script;
+    this.maxEngines = maxEngines;
+    this.idleEngines = new LinkedBlockingQueue<>();
+    this.engineCount = new AtomicInteger();
 
-    String engineVersion = factory.getEngineVersion();
-    String cacheLocation = Paths.get(System.getProperty("user.home"), ".code-story", "nashorn_code_cache_" + engineVersion).toFile().getAbsolutePath();
-    System.setProperty("nashorn.persistent.code.cache", cacheLocation);
+    // Fail fast on invalid scripts
+    idleEngines.add(createEngine());
+  }
 
-    ScriptEngine nashorn = factory.getScriptEngine(nashornOptions());
+  private Engine createEngine() {
+    engineCount.incrementAndGet();
+    try {
+      return new Engine(script);
+    } catch (RuntimeException e) {
+      engineCount.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private Engine acquire() {
+    Engine engine = idleEngines.poll();
+    if (engine != null) {
+      return engine;
+    }
+
+    if (engineCount.get() < maxEngines) {
+      synchronized (this) {
+        if (engineCount.get() < maxEngines) {
+          return createEngine();
+        }
+      }
+    }
 
     try {
-      compiledScript = ((Compilable) nashorn).compile(script);
-      bindings = nashorn.getBindings(ENGINE_SCOPE);
-    } catch (ScriptException e) {
-      throw new IllegalStateException("Unable to compile javascript", e);
+      return idleEngines.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a javascript engine", e);
     }
   }
 
+  private void release(Engine engine) {
+    idleEngines.add(engine);
+  }
+
+  int engineCount() {
+    return engineCount.get();
+  }
+
   private static String[] nashornOptions() {
     List<String> options = new ArrayList<>();
 
@@ -72,7 +113,7 @@ public final class NashornCompiler {
 
   public static NashornCompiler get(String... scriptPaths) {
     String script = readScripts(scriptPaths);
-    return CACHE_BY_SCRIPT.computeIfAbsent(script, s -> new NashornCompiler(s));
+    return CACHE_BY_SCRIPT.computeIfAbsent(script, s -> new NashornCompiler(s, MAX_ENGINES));
   }
 
   private static String readScripts(String... scriptPaths) {
@@ -91,17 +132,12 @@ public final class NashornCompiler {
     return concatenatedScript.toString();
   }
 
-  public synchronized String compile(String filename, String sourceName, String source, Map<String, Object> options) {
-    bindings.put("__filename", filename);
-    bindings.put("__sourcename", sourceName);
-    bindings.put("__source", source);
-    options.forEach((name, value) -> bindings.put(name, value));
-
+  public String compile(String filename, String sourceName, String source, Map<String, Object> options) {
+    Engine engine = acquire();
     try {
-      return compiledScript.eval(bindings).toString();
-    } catch (ScriptException e) {
-      String message = cleanMessage(filename, e.getCause().getMessage());
-      throw new CompilerException(message);
+      return engine.compile(filename, sourceName, source, options);
+    } finally {
+      release(engine);
     }
   }
 
@@ -111,4 +147,47 @@ public final class NashornCompiler {
       "Unable to compile " + filename + ":"
     );
   }
+
+  private static class Engine {
+    private final CompiledScript compiledScript;
+    private final Bindings bindings;
+
+    private Engine(String script) {
+      NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
+
+      String engineVersion = factory.getEngineVersion();
+      String cacheLocation = Paths.get(System.getProperty("user.home"), ".code-story", "nashorn_code_cache_" + engineVersion).toFile().getAbsolutePath();
+      System.setProperty("nashorn.persistent.code.cache", cacheLocation);
+
+      ScriptEngine nashorn = factory.getScriptEngine(nashornOptions());
+
+      try {
+        compiledScript = ((Compilable) nashorn).compile(script);
+        bindings = nashorn.getBindings(ENGINE_SCOPE);
+      } catch (ScriptException e) {
+        throw new IllegalStateException("Unable to compile javascript", e);
+      }
+    }
+
+    private String compile(String filename, String sourceName, String source, Map<String, Object> options) {
+      bindings.put("__filename", filename);
+      bindings.put("__sourcename", sourceName);
+      bindings.put("__source", source);
+      options.forEach((name, value) -> bindings.put(name, value));
+
+      try {
+        return compiledScript.eval(bindings).toString();
+      } catch (ScriptException e) {
+        String message = cleanMessage(filename, e.getCause().getMessage());
+        throw new CompilerException(message);
+      } finally {
+        // The engine is pooled: nothing from this compilation must leak to the next one
+        //
+        bindings.remove("__filename");
+        bindings.remove("__sourcename");
+        bindings.remove("__source");
+        options.keySet().forEach(bindings::remove);
+      }
+    }
+  }
 }
@@ -18,6 +18,7 @@ package net.codestory.http.compilers;
 import java.io.*;
 import java.net.*;
 import java.nio.file.*;
+import java.util.function.*;
 
 import net.codestory.http.io.*;
 
@@ -26,10 +27,12 @@ import com.github.sommeri.less4j.*;
 class PathSource extends LessSource {
   private final Resources resources;
   private final SourceFile sourceFile;
+  private final Consumer<Path> dependencies;
 
-  PathSource(Resources resources, SourceFile sourceFile) {
+  PathSource(Resources resources, SourceFile sourceFile, Consumer<Path> dependencies) {
     this.resources = resources;
     this.sourceFile = sourceFile;
+    this.dependencies = dependencies;
   }
 
   @Override
@@ -48,8 +51,10 @@ class PathSource extends LessSource {
       throw new FileNotFound();
     }
 
+    dependencies.accept(relativePath);
+
     try {
-      return new PathSource(resources, resources.sourceFile(relativePath));
+      return new PathSource(resources, resources.sourceFile(relativePath), dependencies);
     } catch (IOException e) {
       throw new CannotReadFile();
     }
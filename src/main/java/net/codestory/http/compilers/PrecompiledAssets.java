@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Collections.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import net.codestory.http.convert.*;
+import net.codestory.http.io.*;
+
+import com.fasterxml.jackson.core.type.*;
+
+// Manifest of the assets compiled ahead of time by PreCompile: the sha1
+// and size of each compiled file, by path. Loaded once at startup so that
+// the server doesn't have to hash assets at runtime.
+//
+public class PrecompiledAssets {
+  public static final String MANIFEST = "_precompiled.json";
+
+  private static final PrecompiledAssets NONE = new PrecompiledAssets(emptyMap());
+
+  private final Map<String, Asset> assets;
+
+  public PrecompiledAssets(Map<String, Asset> assets) {
+    this.assets = unmodifiableMap(new TreeMap<>(assets));
+  }
+
+  public static PrecompiledAssets none() {
+    return NONE;
+  }
+
+  public static PrecompiledAssets load(Resources resources) {
+    Path manifest = Paths.get(MANIFEST);
+    if (!resources.exists(manifest)) {
+      return NONE;
+    }
+
+    try {
+      String json = resources.read(manifest, UTF_8);
+      return new PrecompiledAssets(TypeConvert.fromJson(json, new TypeReference<Map<String, Asset>>() {
+      }));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read " + MANIFEST, e);
+    }
+  }
+
+  public void write(Path folder) throws IOException {
+    Path manifest = folder.resolve(MANIFEST);
+
+    Files.createDirectories(folder);
+    Files.write(manifest, TypeConvert.toByteArray(assets));
+  }
+
+  public Map<String, Asset> assets() {
+    return assets;
+  }
+
+  public Asset get(String path) {
+    return assets.get(path.startsWith("/") ? path.substring(1) : path);
+  }
+
+  public boolean isEmpty() {
+    return assets.isEmpty();
+  }
+
+  public static class Asset {
+    private String sha1;
+    private long size;
+
+    private Asset() {
+      // For jackson
+    }
+
+    public Asset(String sha1, long size) {
+      this.sha1 = sha1;
+      this.size = size;
+    }
+
+    public String sha1() {
+      return sha1;
+    }
+
+    public long size() {
+      return size;
+    }
+  }
+}
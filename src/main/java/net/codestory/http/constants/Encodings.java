@@ -19,6 +19,7 @@ public abstract class Encodings {
   public static final String GZIP = "gzip";
   public static final String DEFLATE = "deflate";
   public static final String SDCH = "sdch";
+  public static final String BROTLI = "br";
 
   private Encodings() {
     // Do not allow subclassing
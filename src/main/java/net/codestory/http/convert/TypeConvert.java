@@ -99,6 +99,13 @@ public class TypeConvert {
     }
   }
 
+  public static void writeJson(Object value, OutputStream output) throws IOException {
+    try (JsonGenerator generator = CURRENT_OBJECT_MAPPER.getFactory().createGenerator(output)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      CURRENT_OBJECT_MAPPER.writer().writeValue(generator, value);
+    }
+  }
+
   public static String toJson(Object value) {
     try {
       return CURRENT_OBJECT_MAPPER.writer().writeValueAsString(value);
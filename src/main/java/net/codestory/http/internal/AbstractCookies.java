@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.codestory.http.*;
+
+// Json values are parsed once per request, and missing cookies are looked
+// up once. Every caller gets the same instance of a parsed value, so it
+// must be treated as read-only.
+//
+// The cache is thread safe since an async route can read the cookies from
+// another thread.
+//
+abstract class AbstractCookies implements Cookies {
+  private static final Object NO_VALUE = new Object();
+
+  private final Map<String, Object> typedValues = new ConcurrentHashMap<>();
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T value(String name, Class<T> type) {
+    Object value = typedValues.get(name);
+    if (value == NO_VALUE) {
+      return null;
+    }
+
+    if (!type.isInstance(value)) {
+      value = Cookies.super.value(name, type);
+      typedValues.put(name, (value == null) ? NO_VALUE : value);
+    }
+    return (T) value;
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Executors that requests can be dispatched to, instead of running on
+// the server's fixed pool of workers. Blocking handlers then scale with
+// the number of concurrent requests.
+//
+public class RequestExecutors {
+  private RequestExecutors() {
+    // Static utility class
+  }
+
+  // One virtual thread per request on JDKs that support them,
+  // an unbounded pool of threads otherwise.
+  //
+  public static ExecutorService virtualThreads() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return unbounded();
+    }
+  }
+
+  public static ExecutorService unbounded() {
+    AtomicInteger count = new AtomicInteger();
+
+    return Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "http-request-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // Null means requests run on the server's workers
+  //
+  public static ExecutorService of(String mode) {
+    switch (mode) {
+      case "workers":
+        return null;
+      case "virtual":
+        return virtualThreads();
+      case "unbounded":
+        return unbounded();
+      default:
+        throw new IllegalArgumentException("Unknown execution mode: " + mode);
+    }
+  }
+}
@@ -23,7 +23,7 @@ import org.simpleframework.http.Request;
 
 import static java.util.stream.Collectors.toMap;
 
-class SimpleCookies implements Cookies {
+class SimpleCookies extends AbstractCookies {
   private final Request request;
 
   SimpleCookies(Request request) {
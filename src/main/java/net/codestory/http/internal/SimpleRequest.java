@@ -15,19 +15,32 @@
  */
 package net.codestory.http.internal;
 
+import static java.util.Collections.*;
 import static java.util.stream.Collectors.toList;
+import static net.codestory.http.misc.MemoizingSupplier.*;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.function.*;
 
 import net.codestory.http.*;
 
+// Cookies, query and parts are wrapped once per request, on first
+// access. They can be reached from another thread by async routes.
+//
 class SimpleRequest implements Request {
   private final org.simpleframework.http.Request request;
 
+  private final Supplier<Cookies> cookies;
+  private final Supplier<Query> query;
+  private final Supplier<List<Part>> parts;
+
   SimpleRequest(org.simpleframework.http.Request request) {
     this.request = request;
+    this.cookies = memoize(() -> new SimpleCookies(request));
+    this.query = memoize(() -> new SimpleQuery(request.getQuery()));
+    this.parts = memoize(() -> unmodifiableList(request.getParts().stream().map(part -> (Part) new SimplePart(part)).collect(toList())));
   }
 
   @Override
@@ -82,17 +95,17 @@ class SimpleRequest implements Request {
 
   @Override
   public Cookies cookies() {
-    return new SimpleCookies(request);
+    return cookies.get();
   }
 
   @Override
   public Query query() {
-    return new SimpleQuery(request.getQuery());
+    return query.get();
   }
 
   @Override
   public List<Part> parts() {
-    return request.getParts().stream().map(part -> new SimplePart(part)).collect(toList());
+    return parts.get();
   }
 
   @Override
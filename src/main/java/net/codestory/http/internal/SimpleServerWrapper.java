@@ -18,8 +18,11 @@ package net.codestory.http.internal;
 import java.io.*;
 import java.net.*;
 
+import net.codestory.http.ServerConfiguration;
+import net.codestory.http.misc.*;
 import net.codestory.http.websockets.*;
 
+import org.simpleframework.common.buffer.*;
 import org.simpleframework.http.*;
 import org.simpleframework.http.core.*;
 import org.simpleframework.http.socket.*;
@@ -33,27 +36,36 @@ import javax.net.ssl.*;
 public class SimpleServerWrapper implements HttpServerWrapper, Container, Service {
   private final Handler httpHandler;
   private final WebSocketHandler webSocketHandler;
-  private final int count;
-  private final int select;
+  private final ServerConfiguration configuration;
 
   private SocketConnection socketConnection;
 
   public SimpleServerWrapper(Handler httpHandler, WebSocketHandler webSocketHandler) {
-    this(httpHandler, webSocketHandler, 8, 1);
+    this(httpHandler, webSocketHandler, ServerConfiguration.of(new Env()));
   }
 
   public SimpleServerWrapper(Handler httpHandler, WebSocketHandler webSocketHandler, int count, int select) {
+    this(httpHandler, webSocketHandler, ServerConfiguration.of(new Env()).withWorkers(count).withSelectors(select));
+  }
+
+  public SimpleServerWrapper(Handler httpHandler, WebSocketHandler webSocketHandler, ServerConfiguration configuration) {
     this.httpHandler = httpHandler;
     this.webSocketHandler = webSocketHandler;
-    this.count = count;
-    this.select = select;
+    this.configuration = configuration;
   }
 
+  // Simpleframework binds the socket and manages idle connections by itself:
+  // backlog and keep-alive timeout are not applied.
+  //
   @Override
   public void start(int port, SSLContext context, boolean authReq) throws IOException {
+    int workers = configuration.workers();
+    int selectors = configuration.selectors();
+    Allocator allocator = new FileAllocator(configuration.bufferSize());
+
     DirectRouter router = new DirectRouter(this);
-    RouterContainer routerContainer = new RouterContainer(this, router, 10);
-    ContainerSocketProcessor server = new ContainerSocketProcessor(routerContainer, count, select);
+    RouterContainer routerContainer = new RouterContainer(this, router, workers);
+    ContainerSocketProcessor server = new ContainerSocketProcessor(routerContainer, allocator, workers, selectors);
     socketConnection = new SocketConnection(authReq ? new AuthRequiredServer(server) : server);
     socketConnection.connect(new InetSocketAddress(port), context);
   }
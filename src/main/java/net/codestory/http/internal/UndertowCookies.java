@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.util.*;
+
+import net.codestory.http.*;
+
+class UndertowCookies extends AbstractCookies {
+  private final Map<String, io.undertow.server.handlers.Cookie> cookies;
+
+  UndertowCookies(Map<String, io.undertow.server.handlers.Cookie> cookies) {
+    this.cookies = cookies;
+  }
+
+  @Override
+  public Iterator<Cookie> iterator() {
+    return cookies.values().stream().map(cookie -> (Cookie) new UndertowCookie(cookie)).iterator();
+  }
+
+  @Override
+  public Cookie get(String name) {
+    io.undertow.server.handlers.Cookie cookie = cookies.get(name);
+    return (cookie == null) ? null : new UndertowCookie(cookie);
+  }
+
+  // Implementation more efficient than the default one
+  // because here we don't wrap the cookie.
+  //
+  @Override
+  public String value(String name) {
+    io.undertow.server.handlers.Cookie cookie = cookies.get(name);
+    return (cookie == null) ? null : cookie.getValue();
+  }
+
+  @Override
+  public Map<String, String> keyValues() {
+    return cookies.values().stream().collect(toMap(cookie -> cookie.getName(), cookie -> cookie.getValue()));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    return type.isInstance(cookies) ? (T) cookies : null;
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.*;
+
+import net.codestory.http.*;
+import net.codestory.http.io.*;
+
+import io.undertow.server.handlers.form.*;
+import io.undertow.util.*;
+
+class UndertowPart implements Part {
+  private final String name;
+  private final FormData.FormValue value;
+
+  UndertowPart(String name, FormData.FormValue value) {
+    this.name = name;
+    this.value = value;
+  }
+
+  @Override
+  public boolean isFile() {
+    return value.isFileItem();
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public String fileName() {
+    return value.getFileName();
+  }
+
+  @Override
+  public String header(String name) {
+    HeaderMap headers = value.getHeaders();
+    return (headers == null) ? null : headers.getFirst(name);
+  }
+
+  @Override
+  public String content() throws IOException {
+    return value.isFileItem() ? InputStreams.readString(inputStream(), UTF_8) : value.getValue();
+  }
+
+  @Override
+  public InputStream inputStream() throws IOException {
+    return value.isFileItem() ? value.getFileItem().getInputStream() : new ByteArrayInputStream(value.getValue().getBytes(UTF_8));
+  }
+
+  @Override
+  public String contentType() {
+    return header(Headers.CONTENT_TYPE_STRING);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    return type.isInstance(value) ? (T) value : null;
+  }
+}
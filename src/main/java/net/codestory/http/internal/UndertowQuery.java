@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import static java.util.Collections.*;
+
+import java.util.*;
+
+import net.codestory.http.*;
+
+import io.undertow.server.handlers.form.*;
+
+// Query string parameters followed by the fields of an url encoded,
+// or multipart, form.
+//
+class UndertowQuery implements Query {
+  private final Map<String, List<String>> values;
+
+  UndertowQuery(Map<String, Deque<String>> parameters, FormData form) {
+    this.values = new LinkedHashMap<>();
+
+    parameters.forEach((name, all) -> values.computeIfAbsent(name, key -> new ArrayList<>()).addAll(all));
+    if (form != null) {
+      for (String name : form) {
+        for (FormData.FormValue value : form.get(name)) {
+          if (!value.isFileItem()) {
+            values.computeIfAbsent(name, key -> new ArrayList<>()).add(value.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public Collection<String> keys() {
+    return values.keySet();
+  }
+
+  @Override
+  public Iterable<String> all(String name) {
+    return values.getOrDefault(name, emptyList());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    return type.isInstance(values) ? (T) values : null;
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Collections.*;
+import static net.codestory.http.misc.MemoizingSupplier.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.function.*;
+
+import net.codestory.http.*;
+import net.codestory.http.Cookies;
+import net.codestory.http.io.*;
+
+import io.undertow.server.*;
+import io.undertow.server.handlers.form.*;
+import io.undertow.util.*;
+
+// Cookies, query and parts are wrapped once per request, on first
+// access. They can be reached from another thread by async routes.
+//
+class UndertowRequest implements Request {
+  private static final FormParserFactory FORM_PARSERS = FormParserFactory.builder().build();
+  private static final String URL_ENCODED = "application/x-www-form-urlencoded";
+  private static final int MAX_FORM_FIELDS = 1000;
+
+  private final HttpServerExchange exchange;
+
+  private final Supplier<Cookies> cookies;
+  private final Supplier<Query> query;
+  private final Supplier<List<Part>> parts;
+  private final Supplier<FormData> formData;
+  private final Supplier<String> urlEncodedBody;
+
+  UndertowRequest(HttpServerExchange exchange) {
+    this.exchange = exchange;
+    this.cookies = memoize(() -> new UndertowCookies(exchange.getRequestCookies()));
+    this.query = memoize(() -> new UndertowQuery(exchange.getQueryParameters(), formData()));
+    this.parts = memoize(() -> unmodifiableList(readParts()));
+    this.formData = memoize(() -> parseFormData());
+    this.urlEncodedBody = memoize(() -> readUrlEncodedBody());
+  }
+
+  @Override
+  public String uri() {
+    return exchange.getRequestPath();
+  }
+
+  @Override
+  public String method() {
+    return exchange.getRequestMethod().toString();
+  }
+
+  @Override
+  public String content() throws IOException {
+    if (isUrlEncoded()) {
+      try {
+        return urlEncodedBody.get();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+    return InputStreams.readString(inputStream(), charset());
+  }
+
+  @Override
+  public String contentType() {
+    String contentType = header(Headers.CONTENT_TYPE_STRING);
+    if (contentType == null) {
+      return null;
+    }
+
+    int semicolon = contentType.indexOf(';');
+    return ((semicolon == -1) ? contentType : contentType.substring(0, semicolon)).trim();
+  }
+
+  private Charset charset() {
+    String charset = Headers.extractQuotedValueFromHeader(header(Headers.CONTENT_TYPE_STRING), "charset");
+    return (charset == null) ? UTF_8 : Charset.forName(charset);
+  }
+
+  @Override
+  public InputStream inputStream() throws IOException {
+    return exchange.getInputStream();
+  }
+
+  @Override
+  public List<String> headerNames() {
+    List<String> names = new ArrayList<>();
+    exchange.getRequestHeaders().getHeaderNames().forEach(name -> names.add(name.toString()));
+    return names;
+  }
+
+  @Override
+  public List<String> headers(String name) {
+    HeaderValues values = exchange.getRequestHeaders().get(name);
+    return (values == null) ? emptyList() : new ArrayList<>(values);
+  }
+
+  @Override
+  public String header(String name) {
+    return exchange.getRequestHeaders().getFirst(name);
+  }
+
+  @Override
+  public InetSocketAddress clientAddress() {
+    return exchange.getSourceAddress();
+  }
+
+  @Override
+  public boolean isSecure() {
+    return "https".equals(exchange.getRequestScheme());
+  }
+
+  @Override
+  public Cookies cookies() {
+    return cookies.get();
+  }
+
+  @Override
+  public Query query() {
+    return query.get();
+  }
+
+  @Override
+  public List<Part> parts() {
+    return parts.get();
+  }
+
+  private List<Part> readParts() {
+    String contentType = contentType();
+    if ((contentType == null) || !contentType.startsWith("multipart/")) {
+      return emptyList();
+    }
+
+    FormData form = formData();
+    if (form == null) {
+      return emptyList();
+    }
+
+    List<Part> parts = new ArrayList<>();
+    for (String name : form) {
+      form.get(name).forEach(value -> parts.add(new UndertowPart(name, value)));
+    }
+    return parts;
+  }
+
+  // Url encoded bodies are read once, as text, so that both content() and
+  // query() can use them. Multipart bodies are parsed once, on demand, by
+  // Undertow: that consumes the body, so content() and inputStream() are
+  // empty after query() or parts().
+  //
+  private FormData formData() {
+    return formData.get();
+  }
+
+  private boolean isUrlEncoded() {
+    return URL_ENCODED.equalsIgnoreCase(contentType());
+  }
+
+  private String readUrlEncodedBody() {
+    try {
+      return InputStreams.readString(inputStream(), charset());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read form", e);
+    }
+  }
+
+  private FormData parseFormData() {
+    if (isUrlEncoded()) {
+      return parseUrlEncoded(urlEncodedBody.get(), charset());
+    }
+
+    FormDataParser parser = FORM_PARSERS.createParser(exchange);
+    if (parser == null) {
+      return null;
+    }
+
+    try {
+      return parser.parseBlocking();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to parse form", e);
+    }
+  }
+
+  private static FormData parseUrlEncoded(String body, Charset charset) {
+    FormData form = new FormData(MAX_FORM_FIELDS);
+    for (String field : body.split("&")) {
+      if (field.isEmpty()) {
+        continue;
+      }
+
+      int equals = field.indexOf('=');
+      String name = (equals == -1) ? field : field.substring(0, equals);
+      String value = (equals == -1) ? "" : field.substring(equals + 1);
+      form.add(decode(name, charset), decode(value, charset));
+    }
+    return form;
+  }
+
+  private static String decode(String value, Charset charset) {
+    try {
+      return URLDecoder.decode(value, charset.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("Unsupported charset " + charset, e);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    return type.isInstance(exchange) ? (T) exchange : null;
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import java.io.*;
+import java.util.*;
+
+import net.codestory.http.Cookie;
+import net.codestory.http.Response;
+
+import io.undertow.server.*;
+import io.undertow.server.handlers.*;
+import io.undertow.util.*;
+
+class UndertowResponse implements Response {
+  private final HttpServerExchange exchange;
+
+  UndertowResponse(HttpServerExchange exchange) {
+    this.exchange = exchange;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      exchange.getOutputStream().close();
+    } finally {
+      exchange.endExchange();
+    }
+  }
+
+  @Override
+  public OutputStream outputStream() throws IOException {
+    return exchange.getOutputStream();
+  }
+
+  @Override
+  public void setContentLength(long length) {
+    exchange.setResponseContentLength(length);
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    exchange.getResponseHeaders().put(HttpString.tryFromString(name), value);
+  }
+
+  @Override
+  public void setStatus(int statusCode) {
+    exchange.setStatusCode(statusCode);
+  }
+
+  @Override
+  public void setCookie(Cookie newCookie) {
+    CookieImpl cookie = new CookieImpl(newCookie.name(), newCookie.value());
+    cookie.setPath(newCookie.path());
+    cookie.setDomain(newCookie.domain());
+    cookie.setVersion(newCookie.version());
+    cookie.setSecure(newCookie.isSecure());
+    cookie.setHttpOnly(newCookie.isHttpOnly());
+    if (newCookie.expiry() >= 0) {
+      cookie.setMaxAge(newCookie.expiry());
+      cookie.setExpires(new Date(System.currentTimeMillis() + newCookie.expiry() * 1000L));
+    }
+
+    exchange.setResponseCookie(cookie);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    return type.isInstance(exchange) ? (T) exchange : null;
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import java.io.*;
+import java.net.*;
+
+import net.codestory.http.ServerConfiguration;
+import net.codestory.http.websockets.*;
+
+import io.undertow.*;
+import io.undertow.server.*;
+import io.undertow.util.*;
+import io.undertow.websockets.*;
+import io.undertow.websockets.core.protocol.*;
+import org.xnio.*;
+
+import javax.net.ssl.*;
+
+// Server backed by Undertow's NIO engine. Supports HTTP/2, both
+// as an upgrade of clear text connections (h2c) and negotiated with
+// ALPN over SSL.
+//
+// Undertow is an optional dependency: this class doesn't implement any
+// of its interfaces so that it can be referenced without it.
+//
+public class UndertowServerWrapper implements HttpServerWrapper {
+  // Undertow pools a buffer per read and write. Bigger buffers only waste memory.
+  private static final int MAX_BUFFER_SIZE = 16 * 1024;
+
+  private final Handler httpHandler;
+  private final WebSocketHandler webSocketHandler;
+  private final ServerConfiguration configuration;
+
+  private Undertow server;
+
+  public UndertowServerWrapper(Handler httpHandler, WebSocketHandler webSocketHandler, ServerConfiguration configuration) {
+    this.httpHandler = httpHandler;
+    this.webSocketHandler = webSocketHandler;
+    this.configuration = configuration;
+  }
+
+  @Override
+  public void start(int port, SSLContext context, boolean authReq) throws IOException {
+    Undertow.Builder builder = Undertow.builder()
+      .setIoThreads(configuration.selectors())
+      .setWorkerThreads(configuration.workers())
+      .setBufferSize(Math.min(configuration.bufferSize(), MAX_BUFFER_SIZE))
+      .setSocketOption(Options.BACKLOG, configuration.backlog())
+      .setServerOption(UndertowOptions.NO_REQUEST_TIMEOUT, configuration.keepAliveTimeout() * 1000)
+      .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+      .setHandler(this::handle);
+
+    if (context == null) {
+      builder.addHttpListener(port, "0.0.0.0");
+    } else {
+      builder.addHttpsListener(port, "0.0.0.0", context);
+      if (authReq) {
+        builder.setSocketOption(Options.SSL_CLIENT_AUTH_MODE, SslClientAuthMode.REQUIRED);
+      }
+    }
+
+    server = builder.build();
+    try {
+      server.start();
+    } catch (RuntimeException e) {
+      server.stop();
+      if (e.getCause() instanceof BindException) {
+        throw (BindException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  // Handlers block: they run on the worker threads, never on the io threads.
+  // The exchange is ended when the response is closed, which can happen
+  // after the handler returns.
+  //
+  private void handle(HttpServerExchange exchange) throws Exception {
+    if (exchange.isInIoThread()) {
+      exchange.dispatch(this::handle);
+      return;
+    }
+
+    if (isWebSocketUpgrade(exchange)) {
+      upgrade(exchange);
+      return;
+    }
+
+    exchange.startBlocking();
+    exchange.dispatch(SameThreadExecutor.INSTANCE, () -> httpHandler.handle(new UndertowRequest(exchange), new UndertowResponse(exchange)));
+  }
+
+  private static boolean isWebSocketUpgrade(HttpServerExchange exchange) {
+    return "websocket".equalsIgnoreCase(exchange.getRequestHeaders().getFirst(Headers.UPGRADE));
+  }
+
+  private void upgrade(HttpServerExchange exchange) throws Exception {
+    WebSocketListener listener = webSocketHandler.create(new UndertowRequest(exchange), new UndertowResponse(exchange));
+
+    new WebSocketProtocolHandshakeHandler((WebSocketConnectionCallback) (upgradeExchange, channel) -> {
+      UndertowWebSocketSession session = new UndertowWebSocketSession(channel);
+      channel.getReceiveSetter().set(session.receiveListener(listener));
+      channel.resumeReceives();
+    }).handleRequest(exchange);
+  }
+
+  @Override
+  public void stop() throws IOException {
+    server.stop();
+  }
+}
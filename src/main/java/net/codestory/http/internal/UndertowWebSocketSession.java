@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.*;
+import java.nio.*;
+
+import net.codestory.http.websockets.*;
+
+import io.undertow.websockets.core.*;
+import org.xnio.*;
+
+class UndertowWebSocketSession implements WebSocketSession, Unwrappable {
+  private final WebSocketChannel channel;
+
+  UndertowWebSocketSession(WebSocketChannel channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void send(String message) throws IOException {
+    WebSockets.sendTextBlocking(message, channel);
+  }
+
+  @Override
+  public void send(byte[] message) throws IOException {
+    WebSockets.sendBinaryBlocking(ByteBuffer.wrap(message), channel);
+  }
+
+  AbstractReceiveListener receiveListener(WebSocketListener listener) {
+    WebSocketSession session = this;
+
+    return new AbstractReceiveListener() {
+      @Override
+      protected void onFullTextMessage(WebSocketChannel channel, BufferedTextMessage message) {
+        String text = message.getData();
+        listener.onFrame(session, "TEXT", () -> text);
+      }
+
+      @Override
+      protected void onFullBinaryMessage(WebSocketChannel channel, BufferedBinaryMessage message) {
+        Pooled<ByteBuffer[]> data = message.getData();
+        try {
+          String text = UTF_8.decode(WebSockets.mergeBuffers(data.getResource())).toString();
+          listener.onFrame(session, "BINARY", () -> text);
+        } finally {
+          data.free();
+        }
+      }
+
+      @Override
+      protected void onCloseMessage(CloseMessage message, WebSocketChannel channel) {
+        listener.onClose(session, message.getCode(), message.getReason());
+      }
+
+      @Override
+      protected void onError(WebSocketChannel channel, Throwable error) {
+        listener.onError(session, (error instanceof Exception) ? (Exception) error : new IllegalStateException(error));
+        super.onError(channel, error);
+      }
+    };
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    return type.isInstance(channel) ? (T) channel : null;
+  }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static java.util.Collections.*;
+import static net.codestory.http.io.FileVisitor.*;
+import static net.codestory.http.io.Resources.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+
+import net.codestory.http.misc.*;
+import net.codestory.http.types.*;
+
+// Immutable index of the files found in the app folder, on the filesystem
+// and in the classpath, built from a single walk at startup.
+//
+// Used in prod mode, where files are not supposed to change, to answer
+// lookups with a hash lookup instead of syscalls and classloader probes.
+//
+public class AssetIndex {
+  private static final String[] TEMPLATE_EXTENSIONS = {"", ".html", ".md", ".markdown", ".txt"};
+
+  private final Map<String, Asset> assets;
+  private final Map<String, String> extensionByUri;
+
+  private AssetIndex(Map<String, Asset> assets) {
+    this.assets = unmodifiableMap(assets);
+    this.extensionByUri = unmodifiableMap(extensionByUri(assets.keySet()));
+  }
+
+  static AssetIndex build(Env env, Resources resources) {
+    Path rootPath = env.appPath();
+
+    Map<String, Asset> assets = new TreeMap<>();
+
+    if (!env.disableClassPath()) {
+      for (String resource : new ClasspathScanner().getResources(rootPath)) {
+        String path = relativePath(rootPath, Paths.get(resource));
+        Asset asset = classpathAsset(resources, path, toUnixString(Paths.get(resource)));
+        if (asset != null) {
+          assets.put(path, asset);
+        }
+      }
+    }
+
+    if (!env.disableFilesystem()) {
+      walk(rootPath, path -> {
+        File file = path.toFile();
+        if (file.isFile()) {
+          String relativePath = relativePath(rootPath, path);
+          assets.put(relativePath, new Asset(relativePath, file, null, file.length(), file.lastModified()));
+        }
+      });
+    }
+
+    assets.remove("");
+
+    return new AssetIndex(assets);
+  }
+
+  // Lists the files in the app folder, without building an index.
+  //
+  public static Set<String> list(Env env) {
+    Path rootPath = env.appPath();
+
+    Set<String> paths = new TreeSet<>();
+
+    if (!env.disableClassPath()) {
+      new ClasspathScanner().getResources(rootPath).forEach(resource -> paths.add(relativePath(rootPath, Paths.get(resource))));
+    }
+
+    if (!env.disableFilesystem()) {
+      walk(rootPath, path -> paths.add(relativePath(rootPath, path)));
+    }
+
+    paths.remove("");
+
+    return paths;
+  }
+
+  private static void walk(Path rootPath, FileVisitor visitor) {
+    try {
+      Files.walkFileTree(rootPath, onFile(visitor));
+    } catch (IOException e) {
+      // Ignore
+    }
+  }
+
+  private static Asset classpathAsset(Resources resources, String path, String resource) {
+    URL url = ClassPaths.getResource(resource);
+    if (url == null) {
+      return null;
+    }
+
+    File file = resources.fileForClasspath(url);
+    if (file == null) {
+      // Inside a jar
+      return new Asset(path, null, url, -1L, 0L);
+    }
+    if (!file.isFile()) {
+      return null;
+    }
+    return new Asset(path, file, url, file.length(), file.lastModified());
+  }
+
+  // Precomputes, for each uri, which of the template extensions
+  // findExistingPath would pick.
+  //
+  private static Map<String, String> extensionByUri(Set<String> paths) {
+    Map<String, String> extensions = new HashMap<>();
+
+    for (int i = TEMPLATE_EXTENSIONS.length - 1; i >= 0; i--) {
+      String extension = TEMPLATE_EXTENSIONS[i];
+      for (String path : paths) {
+        if (path.endsWith(extension)) {
+          extensions.put(path.substring(0, path.length() - extension.length()), extension);
+        }
+      }
+    }
+
+    return extensions;
+  }
+
+  public Set<String> paths() {
+    return assets.keySet();
+  }
+
+  public Asset get(String path) {
+    return assets.get(key(path));
+  }
+
+  public boolean contains(String path) {
+    return assets.containsKey(key(path));
+  }
+
+  // Same as Resources.findExistingPath, for uris without a trailing slash
+  //
+  public String templateExtension(String uri) {
+    return extensionByUri.get(key(uri));
+  }
+
+  private static String key(String path) {
+    return path.startsWith("/") ? path.substring(1) : path;
+  }
+
+  public static class Asset {
+    private final String path;
+    private final File file;
+    private final URL url;
+    private final long size;
+    private final long lastModified;
+    private final String contentType;
+
+    static Asset missing() {
+      return new Asset("", null, null, -1L, 0L);
+    }
+
+    private Asset(String path, File file, URL url, long size, long lastModified) {
+      this.path = path;
+      this.file = file;
+      this.url = url;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentType = ContentTypes.get(path);
+    }
+
+    public String path() {
+      return path;
+    }
+
+    // null for a resource inside a jar
+    public File file() {
+      return file;
+    }
+
+    // null for a file found on the filesystem
+    public URL url() {
+      return url;
+    }
+
+    // -1 if unknown
+    public long size() {
+      return size;
+    }
+
+    // 0 if unknown
+    public long lastModified() {
+      return lastModified;
+    }
+
+    public String contentType() {
+      return contentType;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import java.io.*;
+
+// Discards everything
+//
+public class NullOutputStream extends OutputStream {
+  public static final NullOutputStream INSTANCE = new NullOutputStream();
+
+  private NullOutputStream() {
+  }
+
+  @Override
+  public void write(int b) {
+    // Ignore
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    // Ignore
+  }
+}
@@ -22,21 +22,32 @@ import java.io.*;
 import java.net.*;
 import java.nio.charset.*;
 import java.nio.file.*;
+import java.util.function.*;
 
 import net.codestory.http.compilers.*;
 import net.codestory.http.misc.*;
 
 public class Resources {
   private static final String[] TEMPLATE_EXTENSIONS = {"", ".html", ".md", ".markdown", ".txt"};
+  private static final AssetIndex.Asset NOT_INDEXED = AssetIndex.Asset.missing();
 
   private final String root;
+  private final Supplier<AssetIndex> index;
 
   public Resources(Env env) {
-    this(env.appFolder());
+    this.root = env.appFolder();
+    this.index = env.prodMode() ? MemoizingSupplier.memoize(() -> AssetIndex.build(env, this)) : null;
   }
 
   public Resources(String root) {
     this.root = root;
+    this.index = null;
+  }
+
+  // Index of the files, only available in prod mode
+  //
+  public AssetIndex index() {
+    return (index == null) ? null : index.get();
   }
 
   public SourceFile sourceFile(Path path) throws IOException {
@@ -56,6 +67,13 @@ public class Resources {
     if (uri.endsWith("/")) {
       return findExistingPath(uri + "index");
     }
+
+    AssetIndex assets = index();
+    if ((assets != null) && isNormalized(uri)) {
+      String extension = assets.templateExtension(uri.replace('\\', '/'));
+      return (extension == null) ? null : Paths.get(uri + extension);
+    }
+
     for (String extension : TEMPLATE_EXTENSIONS) {
       Path templatePath = Paths.get(uri + extension);
       if (exists(templatePath)) {
@@ -66,16 +84,54 @@ public class Resources {
   }
 
   public boolean exists(Path path) {
+    AssetIndex.Asset asset = indexed(path);
+    if (asset != null) {
+      return asset != NOT_INDEXED;
+    }
+
     String pathWithPrefix = withPrefix(path);
     return existsInFileSystem(pathWithPrefix) || existsInClassPath(pathWithPrefix);
   }
 
+  // Returns the file to read for this path, or null if the path doesn't exist
+  // or is a resource inside a jar.
+  //
+  public File file(Path path) {
+    AssetIndex.Asset asset = indexed(path);
+    if (asset != null) {
+      return (asset == NOT_INDEXED) ? null : asset.file();
+    }
+
+    String pathWithPrefix = withPrefix(path);
+    if (existsInFileSystem(pathWithPrefix)) {
+      return new File(pathWithPrefix);
+    }
+
+    URL url = getResource(pathWithPrefix);
+    if (url == null) {
+      return null;
+    }
+
+    File file = fileForClasspath(url);
+    return ((file != null) && file.isFile()) ? file : null;
+  }
+
   public String read(Path path, Charset charset) throws IOException {
+    AssetIndex.Asset asset = indexed(path);
+    if ((asset != null) && (asset != NOT_INDEXED)) {
+      return (asset.file() != null) ? readFile(asset.file().getAbsolutePath(), charset) : readUrl(asset.url(), charset);
+    }
+
     String pathWithPrefix = withPrefix(path);
     return existsInFileSystem(pathWithPrefix) ? readFile(pathWithPrefix, charset) : readClasspath(pathWithPrefix, charset);
   }
 
   public byte[] readBytes(Path path) throws IOException {
+    AssetIndex.Asset asset = indexed(path);
+    if ((asset != null) && (asset != NOT_INDEXED)) {
+      return (asset.file() != null) ? readFileBytes(asset.file().getAbsolutePath()) : readUrlBytes(asset.url());
+    }
+
     String pathWithPrefix = withPrefix(path);
     return existsInFileSystem(pathWithPrefix) ? readFileBytes(pathWithPrefix) : readClasspathBytes(pathWithPrefix);
   }
@@ -92,6 +148,28 @@ public class Resources {
 
   // private
 
+  // Returns null when there's no index or the path can't be looked up
+  // in the index, NOT_INDEXED when the index knows the path doesn't exist.
+  //
+  private AssetIndex.Asset indexed(Path path) {
+    AssetIndex assets = index();
+    if (assets == null) {
+      return null;
+    }
+
+    String key = toUnixString(path);
+    if (!isNormalized(key)) {
+      return null;
+    }
+
+    AssetIndex.Asset asset = assets.get(key);
+    return (asset == null) ? NOT_INDEXED : asset;
+  }
+
+  private static boolean isNormalized(String path) {
+    return !path.contains("..") && !path.contains("./") && !path.contains("//");
+  }
+
   private String withPrefix(Path path) {
     return toUnixString(Paths.get(root, path.toString()));
   }
@@ -120,6 +198,10 @@ public class Resources {
       return readFile(file.getAbsolutePath(), charset);
     }
 
+    return readUrl(url, charset);
+  }
+
+  private static String readUrl(URL url, Charset charset) throws IOException {
     try (InputStream from = url.openStream()) {
       return InputStreams.readString(from, charset);
     }
@@ -139,6 +221,10 @@ public class Resources {
       return readFileBytes(file.getAbsolutePath());
     }
 
+    return readUrlBytes(url);
+  }
+
+  private static byte[] readUrlBytes(URL url) throws IOException {
     try (InputStream from = url.openStream()) {
       return InputStreams.readBytes(from);
     }
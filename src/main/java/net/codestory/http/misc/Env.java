@@ -21,18 +21,36 @@ import java.nio.file.Paths;
 public class Env {
   public static final String DEFAULT_APP_FOLDER = "app";
 
+  private static final int CORES = Runtime.getRuntime().availableProcessors();
+
   private final String appFolder;
   private final boolean prodMode;
   private final boolean disableClassPath;
   private final boolean disableFilesystem;
   private final boolean disableGzip;
+  private final int gzipThreshold;
+  private final long gzipCacheSize;
+  private final long compilerCacheSize;
+  private final long markdownCacheSize;
+  private final long diskCacheSize;
+  private final int diskCacheMaxAgeDays;
+  private final String etagAlgorithm;
+  private final int workers;
+  private final int selectors;
+  private final int backlog;
+  private final int bufferSize;
+  private final int keepAliveTimeout;
+  private final String executionMode;
+  private final long asyncTimeout;
+  private final String serverEngine;
 
   public Env() {
-    this.appFolder = getString("APP_FOLDER", DEFAULT_APP_FOLDER);
-    this.prodMode = getBoolean("PROD_MODE", false);
-    this.disableClassPath = getBoolean("http.disable.classpath", false);
-    this.disableFilesystem = getBoolean("http.disable.filesystem", false);
-    this.disableGzip = getBoolean("http.disable.gzip", false);
+    this(
+      getString("APP_FOLDER", DEFAULT_APP_FOLDER),
+      getBoolean("PROD_MODE", false),
+      getBoolean("http.disable.classpath", false),
+      getBoolean("http.disable.filesystem", false),
+      getBoolean("http.disable.gzip", false));
   }
 
   public Env(String appFolder, boolean prodMode, boolean disableClassPath, boolean disableFilesystem, boolean disableGzip) {
@@ -41,6 +59,21 @@ public class Env {
     this.disableClassPath = disableClassPath;
     this.disableFilesystem = disableFilesystem;
     this.disableGzip = disableGzip;
+    this.gzipThreshold = getInt("http.gzip.threshold", 1024);
+    this.gzipCacheSize = getLong("http.gzip.cache.size", 32 * 1024 * 1024L);
+    this.compilerCacheSize = getLong("http.compiler.cache.size", 16 * 1024 * 1024L);
+    this.markdownCacheSize = getLong("http.markdown.cache.size", 4 * 1024 * 1024L);
+    this.diskCacheSize = getLong("http.disk.cache.size", 256 * 1024 * 1024L);
+    this.diskCacheMaxAgeDays = getInt("http.disk.cache.max.age.days", 30);
+    this.etagAlgorithm = getString("http.etag.algorithm", "md5");
+    this.workers = getInt("http.workers", Math.max(8, 2 * CORES));
+    this.selectors = getInt("http.selectors", Math.max(1, CORES / 4));
+    this.backlog = getInt("http.backlog", 1024);
+    this.bufferSize = getInt("http.buffer.size", 1024 * 1024);
+    this.keepAliveTimeout = getInt("http.keep.alive.timeout", 60);
+    this.executionMode = getString("http.execution.mode", "workers");
+    this.asyncTimeout = getLong("http.async.timeout", 30_000L);
+    this.serverEngine = getString("http.server", "simple");
   }
 
   // helper factories
@@ -81,6 +114,66 @@ public class Env {
     return disableGzip;
   }
 
+  public int gzipThreshold() {
+    return gzipThreshold;
+  }
+
+  public long gzipCacheSize() {
+    return gzipCacheSize;
+  }
+
+  public long compilerCacheSize() {
+    return compilerCacheSize;
+  }
+
+  public long markdownCacheSize() {
+    return markdownCacheSize;
+  }
+
+  public long diskCacheSize() {
+    return diskCacheSize;
+  }
+
+  public int diskCacheMaxAgeDays() {
+    return diskCacheMaxAgeDays;
+  }
+
+  public String etagAlgorithm() {
+    return etagAlgorithm;
+  }
+
+  public int workers() {
+    return workers;
+  }
+
+  public int selectors() {
+    return selectors;
+  }
+
+  public int backlog() {
+    return backlog;
+  }
+
+  public int bufferSize() {
+    return bufferSize;
+  }
+
+  public int keepAliveTimeout() {
+    return keepAliveTimeout;
+  }
+
+  public String executionMode() {
+    return executionMode;
+  }
+
+  public long asyncTimeout() {
+    return asyncTimeout;
+  }
+
+  public String serverEngine() {
+    return serverEngine;
+  }
+
   private static String get(String propertyName) {
     String env = System.getenv(propertyName);
     return (env != null) ? env : System.getProperty(propertyName);
@@ -100,4 +193,9 @@ public class Env {
     String value = get(propertyName);
     return (value == null) ? defaultValue : Integer.parseInt(value);
   }
+
+  private static long getLong(String propertyName, long defaultValue) {
+    String value = get(propertyName);
+    return (value == null) ? defaultValue : Long.parseLong(value);
+  }
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import java.util.function.*;
+
+// Caches the result of a lookup. Hits and misses are stored in two
+// separate bounded caches so that requests for random unknown keys
+// can't evict the keys that are actually found.
+//
+public class LookupCache<K, V> implements Function<K, V> {
+  private final Function<K, V> delegate;
+  private final Predicate<V> isMiss;
+  private final LruCache<K, V> hits;
+  private final LruCache<K, V> misses;
+
+  public LookupCache(Function<K, V> delegate, Predicate<V> isMiss, int maxHits, int maxMisses, long ttlMillis) {
+    this.delegate = delegate;
+    this.isMiss = isMiss;
+    this.hits = LruCache.ofSize(maxHits, ttlMillis);
+    this.misses = LruCache.ofSize(maxMisses, ttlMillis);
+  }
+
+  @Override
+  public V apply(K key) {
+    V value = hits.get(key);
+    if (value != null) {
+      return value;
+    }
+
+    value = misses.get(key);
+    if (value != null) {
+      return value;
+    }
+
+    value = delegate.apply(key);
+    if (isMiss.test(value)) {
+      misses.put(key, value);
+    } else {
+      hits.put(key, value);
+    }
+    return value;
+  }
+
+  public void invalidateAll() {
+    hits.invalidateAll();
+    misses.invalidateAll();
+  }
+
+  public long hitCount() {
+    return hits.hitCount();
+  }
+
+  public long negativeHitCount() {
+    return misses.hitCount();
+  }
+
+  // Number of calls to the delegate, a miss in both caches
+  //
+  public long delegateCount() {
+    return misses.missCount();
+  }
+
+  @Override
+  public String toString() {
+    return "hits=[" + hits + "], misses=[" + misses + "]";
+  }
+}
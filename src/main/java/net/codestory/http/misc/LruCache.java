@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static java.util.Comparator.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+// Bounded cache that evicts the least recently used entries once the
+// total weight goes over a maximum. Entries can also expire after a
+// given time to live.
+//
+// Reads don't lock: each entry only remembers when it was last used.
+// Puts that go over the maximum weight evict the entries used the longest
+// time ago, a few more than needed so that sorting them is amortized over
+// the next puts. Eviction is approximate under concurrent access.
+//
+public class LruCache<K, V> {
+  private static final int EVICTION_BATCH_RATIO = 16;
+
+  private final long maxWeight;
+  private final long ttlNanos;
+  private final ToLongFunction<V> weigher;
+  private final LongSupplier clock;
+  private final ConcurrentMap<K, Entry<V>> entries;
+  private final AtomicLong weight;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder evictions;
+
+  public LruCache(long maxWeight, long ttlMillis, ToLongFunction<V> weigher) {
+    this(maxWeight, ttlMillis, weigher, System::nanoTime);
+  }
+
+  LruCache(long maxWeight, long ttlMillis, ToLongFunction<V> weigher, LongSupplier clock) {
+    this.maxWeight = maxWeight;
+    this.ttlNanos = ttlMillis * 1_000_000L;
+    this.weigher = weigher;
+    this.clock = clock;
+    this.entries = new ConcurrentHashMap<>();
+    this.weight = new AtomicLong();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+  }
+
+  public static <K, V> LruCache<K, V> ofSize(int maxEntries, long ttlMillis) {
+    return new LruCache<>(maxEntries, ttlMillis, value -> 1L);
+  }
+
+  public V get(K key) {
+    V value = getIfPresent(key);
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return value;
+  }
+
+  // Two threads can compute the same value concurrently.
+  // Only the last one is kept.
+  //
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+    V value = get(key);
+    if (value == null) {
+      value = loader.apply(key);
+      if (value != null) {
+        put(key, value);
+      }
+    }
+    return value;
+  }
+
+  public void put(K key, V value) {
+    long valueWeight = weigher.applyAsLong(value);
+    if (valueWeight > maxWeight) {
+      invalidate(key);
+      return;
+    }
+
+    long now = clock.getAsLong();
+    Entry<V> previous = entries.put(key, new Entry<>(value, valueWeight, now, expiresAt(now)));
+    long newWeight = weight.addAndGet((previous == null) ? valueWeight : (valueWeight - previous.weight));
+
+    if (newWeight > maxWeight) {
+      evict();
+    }
+  }
+
+  public void invalidate(K key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry != null) {
+      weight.addAndGet(-entry.weight);
+    }
+  }
+
+  public void invalidateAll() {
+    entries.forEach(this::remove);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long weight() {
+    return weight.get();
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  public double hitRatio() {
+    long hitCount = hitCount();
+    long lookups = hitCount + missCount();
+    return (lookups == 0) ? 0.0 : (double) hitCount / lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "hits=" + hitCount() + ", misses=" + missCount() + ", hitRatio=" + hitRatio() + ", evictions=" + evictionCount() + ", size=" + size() + ", weight=" + weight();
+  }
+
+  private V getIfPresent(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    long now = clock.getAsLong();
+    if ((ttlNanos > 0) && (now - entry.expiresAt > 0)) {
+      remove(key, entry);
+      return null;
+    }
+
+    entry.lastUsed = now;
+    return entry.value;
+  }
+
+  // Only one thread evicts at a time. Readers are never blocked.
+  //
+  private synchronized void evict() {
+    if (weight.get() <= maxWeight) {
+      return;
+    }
+
+    List<Candidate<K, V>> candidates = new ArrayList<>(entries.size());
+    entries.forEach((key, entry) -> candidates.add(new Candidate<>(key, entry)));
+    candidates.sort(comparingLong(candidate -> candidate.lastUsed));
+
+    long targetWeight = maxWeight - (maxWeight / EVICTION_BATCH_RATIO);
+    for (Candidate<K, V> candidate : candidates) {
+      if (weight.get() <= targetWeight) {
+        break;
+      }
+      if (remove(candidate.key, candidate.entry)) {
+        evictions.increment();
+      }
+    }
+  }
+
+  private boolean remove(K key, Entry<V> entry) {
+    if (!entries.remove(key, entry)) {
+      return false;
+    }
+
+    weight.addAndGet(-entry.weight);
+    return true;
+  }
+
+  private long expiresAt(long now) {
+    return (ttlNanos > 0) ? (now + ttlNanos) : 0L;
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long weight;
+    private final long expiresAt;
+    private volatile long lastUsed;
+
+    private Entry(V value, long weight, long lastUsed, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.lastUsed = lastUsed;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  // Last use is read once, since it can change during the sort
+  //
+  private static class Candidate<K, V> {
+    private final K key;
+    private final Entry<V> entry;
+    private final long lastUsed;
+
+    private Candidate(K key, Entry<V> entry) {
+      this.key = key;
+      this.entry = entry;
+      this.lastUsed = entry.lastUsed;
+    }
+  }
+}
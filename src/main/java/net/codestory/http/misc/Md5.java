@@ -23,8 +23,12 @@ public class Md5 {
   }
 
   public static String of(byte[] data) {
+    return Hexa.toHex(newDigest().digest(data));
+  }
+
+  public static MessageDigest newDigest() {
     try {
-      return Hexa.toHex(MessageDigest.getInstance("MD5").digest(data));
+      return MessageDigest.getInstance("MD5");
     } catch (NoSuchAlgorithmException e) {
       throw new IllegalStateException("Unable to compute md5", e);
     }
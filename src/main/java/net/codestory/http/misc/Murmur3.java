@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+// 128 bits, x64 variant of MurmurHash3, seed 0. Much faster than md5
+// and good enough to tell two contents apart, not to resist attacks.
+//
+// Same output as Guava's Hashing.murmur3_128().
+//
+public class Murmur3 {
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private Murmur3() {
+    // Static class
+  }
+
+  public static String of(byte[] data) {
+    long h1 = 0;
+    long h2 = 0;
+
+    int length = data.length;
+    int blocks = length / 16;
+
+    for (int i = 0; i < blocks; i++) {
+      long k1 = getLong(data, i * 16);
+      long k2 = getLong(data, (i * 16) + 8);
+
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = (h1 * 5) + 0x52dce729;
+
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = (h2 * 5) + 0x38495ab5;
+    }
+
+    int offset = blocks * 16;
+    long k1 = 0;
+    long k2 = 0;
+    switch (length & 15) {
+      case 15:
+        k2 ^= (long) (data[offset + 14] & 0xff) << 48;
+      case 14:
+        k2 ^= (long) (data[offset + 13] & 0xff) << 40;
+      case 13:
+        k2 ^= (long) (data[offset + 12] & 0xff) << 32;
+      case 12:
+        k2 ^= (long) (data[offset + 11] & 0xff) << 24;
+      case 11:
+        k2 ^= (long) (data[offset + 10] & 0xff) << 16;
+      case 10:
+        k2 ^= (long) (data[offset + 9] & 0xff) << 8;
+      case 9:
+        k2 ^= (long) (data[offset + 8] & 0xff);
+        h2 ^= mixK2(k2);
+      case 8:
+        k1 ^= (long) (data[offset + 7] & 0xff) << 56;
+      case 7:
+        k1 ^= (long) (data[offset + 6] & 0xff) << 48;
+      case 6:
+        k1 ^= (long) (data[offset + 5] & 0xff) << 40;
+      case 5:
+        k1 ^= (long) (data[offset + 4] & 0xff) << 32;
+      case 4:
+        k1 ^= (long) (data[offset + 3] & 0xff) << 24;
+      case 3:
+        k1 ^= (long) (data[offset + 2] & 0xff) << 16;
+      case 2:
+        k1 ^= (long) (data[offset + 1] & 0xff) << 8;
+      case 1:
+        k1 ^= (long) (data[offset] & 0xff);
+        h1 ^= mixK1(k1);
+      default:
+        break;
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+
+    h1 += h2;
+    h2 += h1;
+
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+
+    h1 += h2;
+    h2 += h1;
+
+    byte[] hash = new byte[16];
+    putLong(hash, 0, h1);
+    putLong(hash, 8, h2);
+    return Hexa.toHex(hash);
+  }
+
+  private static long mixK1(long k1) {
+    return Long.rotateLeft(k1 * C1, 31) * C2;
+  }
+
+  private static long mixK2(long k2) {
+    return Long.rotateLeft(k2 * C2, 33) * C1;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  private static long getLong(byte[] data, int offset) {
+    long value = 0;
+    for (int i = 7; i >= 0; i--) {
+      value = (value << 8) | (data[offset + i] & 0xff);
+    }
+    return value;
+  }
+
+  private static void putLong(byte[] data, int offset, long value) {
+    for (int i = 0; i < 8; i++) {
+      data[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
@@ -16,25 +16,44 @@
 package net.codestory.http.misc;
 
 import net.codestory.http.compilers.CompilerFacade;
+import net.codestory.http.compilers.DiskCache;
+import net.codestory.http.compilers.PrecompiledAssets;
 import net.codestory.http.io.Resources;
 import net.codestory.http.io.Strings;
 import net.codestory.http.templating.Site;
+import net.codestory.http.types.ContentTypes;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
 
 import static net.codestory.http.io.Strings.replaceLast;
 
+// Compiles the assets ahead of time, in parallel. Outputs that are newer
+// than their source, and than the files it imported the last time it was
+// compiled, are not compiled again. Compressible outputs get a .gz sibling
+// and a manifest of every output, with its sha1 and size, is written for
+// the server to load at startup.
+//
 public class PreCompile {
+  private final Resources resources;
   private final CompilerFacade compilers;
   private final Site site;
+  private final int gzipThreshold;
 
   public PreCompile(Env env) {
-    Resources resources = new Resources(env);
+    this.resources = new Resources(env);
     this.compilers = new CompilerFacade(env, resources);
     this.site = new Site(env, resources);
+    this.gzipThreshold = env.gzipThreshold();
   }
 
   public static void main(String[] args) {
@@ -44,33 +63,94 @@ public class PreCompile {
   }
 
   public void run(String destinationFolder) {
-    site.getResourceList().forEach(path -> preCompile(path, destinationFolder));
+    Map<String, PrecompiledAssets.Asset> assets = new ConcurrentHashMap<>();
+
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      pool.submit(() -> site.getResourceList().parallelStream().forEach(path -> {
+        PrecompiledAssets.Asset asset = preCompile(path, destinationFolder);
+        if (asset != null) {
+          assets.put(compiledPath(path, Strings.extension(path)), asset);
+        }
+      })).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Pre-compilation was interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Unable to pre-compile", e.getCause());
+    } finally {
+      pool.shutdown();
+      DiskCache.awaitWrites();
+    }
+
+    try {
+      new PrecompiledAssets(assets).write(Paths.get(destinationFolder));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write " + PrecompiledAssets.MANIFEST, e);
+    }
   }
 
-  protected void preCompile(String path, String destinationFolder) {
+  protected PrecompiledAssets.Asset preCompile(String path, String destinationFolder) {
     String extension = Strings.extension(path);
     if (!compilers.canCompile(extension)) {
-      return;
+      return null;
     }
 
     Path fromPath = Paths.get(path);
     Path toPath = toPath(path, extension, destinationFolder);
 
-    System.out.println("Pre-compile [" + fromPath + "] to [" + toPath + "]");
     try {
-      byte[] bytes = compile(fromPath);
-      write(bytes, toPath);
+      byte[] bytes;
+      if (isUpToDate(fromPath, toPath)) {
+        bytes = Files.readAllBytes(toPath);
+      } else {
+        System.out.println("Pre-compile [" + fromPath + "] to [" + toPath + "]");
+        bytes = compile(fromPath);
+        write(bytes, toPath);
+      }
+
+      if (shouldGzip(toPath, bytes)) {
+        writeGzip(bytes, toPath);
+      }
+
+      return new PrecompiledAssets.Asset(Sha1.of(bytes), bytes.length);
     } catch (IOException e) {
       throw new RuntimeException("Unable to pre-compile " + path, e);
     }
   }
 
+  protected String compiledPath(String path, String extension) {
+    return replaceLast(path, extension, compilers.compiledExtension(extension));
+  }
+
   protected Path toPath(String path, String extension, String destinationFolder) {
-    String compiledExtension = compilers.compiledExtension(extension);
+    return Paths.get(destinationFolder, compiledPath(path, extension));
+  }
+
+  protected boolean isUpToDate(Path fromPath, Path toPath) throws IOException {
+    if (!Files.exists(toPath)) {
+      return false;
+    }
 
-    String newName = replaceLast(path, extension, compiledExtension);
+    long lastCompiled = Files.getLastModifiedTime(toPath).toMillis();
+    if (!isOlderThan(fromPath, lastCompiled)) {
+      return false;
+    }
+
+    for (Path importedPath : compilers.imports(fromPath)) {
+      if (!isOlderThan(importedPath, lastCompiled)) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-    return Paths.get(destinationFolder, newName);
+  private boolean isOlderThan(Path path, long millis) {
+    File file = resources.file(path);
+    return (file != null) && (file.lastModified() < millis);
   }
 
   protected byte[] compile(Path fromPath) throws IOException {
@@ -81,4 +161,22 @@ public class PreCompile {
     Files.createDirectories(toPath.getParent());
     Files.write(toPath, bytes);
   }
+
+  protected boolean shouldGzip(Path toPath, byte[] bytes) {
+    return (bytes.length >= gzipThreshold) && ContentTypes.isCompressible(ContentTypes.get(toPath.toString()));
+  }
+
+  protected void writeGzip(byte[] bytes, Path toPath) throws IOException {
+    Path gzipPath = Paths.get(toPath + ".gz");
+    if (Files.exists(gzipPath) && (Files.getLastModifiedTime(gzipPath).compareTo(Files.getLastModifiedTime(toPath)) >= 0)) {
+      return;
+    }
+
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream(Math.max(32, bytes.length / 4));
+    try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+      gzip.write(bytes);
+    }
+
+    Files.write(gzipPath, gzipped.toByteArray());
+  }
 }
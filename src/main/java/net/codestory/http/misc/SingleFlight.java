@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+// Runs at most one computation per key at a time. Threads that ask
+// for a key already being computed wait for, and share, its result.
+//
+public class SingleFlight<K, V> {
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  public V run(K key, Supplier<V> supplier) {
+    CompletableFuture<V> future = new CompletableFuture<>();
+
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+    if (running != null) {
+      return await(running);
+    }
+
+    try {
+      V value = supplier.get();
+      future.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
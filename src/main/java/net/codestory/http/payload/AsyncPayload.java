@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.util.concurrent.TimeUnit.*;
+import static net.codestory.http.constants.HttpStatus.*;
+
+import java.util.concurrent.*;
+
+// Routes can return a CompletionStage. The payload then wraps the pending
+// result, with the headers and cookies that filters might have added,
+// until it's resolved into the payload to write.
+//
+// A payload that doesn't resolve in time is replaced by a 503.
+//
+public class AsyncPayload {
+  private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "async-payload-timeouts");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private AsyncPayload() {
+    // Static utility class
+  }
+
+  public static boolean isAsync(Payload payload) {
+    return payload.rawContent() instanceof CompletionStage<?>;
+  }
+
+  public static CompletableFuture<Payload> resolve(Payload payload, long timeoutMillis) {
+    CompletableFuture<Payload> resolved = new CompletableFuture<>();
+
+    ScheduledFuture<?> timeout = TIMEOUTS.schedule(() -> resolved.complete(new Payload(SERVICE_UNAVAILABLE)), timeoutMillis, MILLISECONDS);
+
+    ((CompletionStage<?>) payload.rawContent()).whenComplete((value, error) -> {
+      timeout.cancel(false);
+
+      if (error != null) {
+        resolved.completeExceptionally(unwrap(error));
+      } else {
+        resolved.complete(merge(payload, value));
+      }
+    });
+
+    return resolved;
+  }
+
+  private static Payload merge(Payload pending, Object value) {
+    Payload payload = new Payload(pending.rawContentType(), value, pending.code());
+    if (!(value instanceof Payload)) {
+      payload.withEtagMode(pending.etagMode());
+    }
+
+    pending.headers().forEach(payload.headers()::putIfAbsent);
+    payload.cookies().addAll(0, pending.cookies());
+
+    return payload;
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    if ((error instanceof CompletionException) && (error.getCause() != null)) {
+      return error.getCause();
+    }
+    return error;
+  }
+}
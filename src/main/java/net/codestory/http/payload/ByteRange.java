@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+
+// A range of bytes requested with a Range header, bounds included.
+//
+public class ByteRange {
+  private static final int MAX_RANGES = 16;
+  private static final long EMPTY = -1;
+  private static final long INVALID = -2;
+
+  private final long start;
+  private final long end;
+
+  public ByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  // Returns null if the header is invalid and should be ignored,
+  // an empty list if none of the ranges can be satisfied.
+  //
+  public static List<ByteRange> parse(String header, long length) {
+    if ((header == null) || !header.regionMatches(true, 0, "bytes=", 0, 6)) {
+      return null;
+    }
+
+    String[] specs = header.substring(6).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<ByteRange> ranges = new ArrayList<>();
+    for (String spec : specs) {
+      String range = spec.trim();
+      int dash = range.indexOf('-');
+      if (dash == -1) {
+        return null;
+      }
+
+      long first = parseLong(range.substring(0, dash));
+      long last = parseLong(range.substring(dash + 1));
+      if ((first == INVALID) || (last == INVALID)) {
+        return null;
+      }
+
+      if (first == EMPTY) {
+        if (last == EMPTY) {
+          return null;
+        }
+        if ((last > 0) && (length > 0)) {
+          ranges.add(new ByteRange(Math.max(0, length - last), length - 1));
+        }
+      } else {
+        if ((last != EMPTY) && (last < first)) {
+          return null;
+        }
+        if (first < length) {
+          ranges.add(new ByteRange(first, (last == EMPTY) ? (length - 1) : Math.min(last, length - 1)));
+        }
+      }
+    }
+
+    return ranges;
+  }
+
+  private static long parseLong(String value) {
+    String trimmed = value.trim();
+    if (trimmed.isEmpty()) {
+      return EMPTY;
+    }
+    for (int i = 0; i < trimmed.length(); i++) {
+      if (!Character.isDigit(trimmed.charAt(i))) {
+        return INVALID;
+      }
+    }
+    try {
+      return Long.parseLong(trimmed);
+    } catch (NumberFormatException e) {
+      return INVALID;
+    }
+  }
+
+  public long start() {
+    return start;
+  }
+
+  public long end() {
+    return end;
+  }
+
+  public long length() {
+    return end - start + 1;
+  }
+
+  public String contentRange(long totalLength) {
+    return "bytes " + start + '-' + end + '/' + totalLength;
+  }
+
+  public static String unsatisfiedRange(long totalLength) {
+    return "bytes */" + totalLength;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof ByteRange) {
+      ByteRange other = (ByteRange) obj;
+      return (start == other.start) && (end == other.end);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return start + "-" + end;
+  }
+
+  @FunctionalInterface
+  public interface Source {
+    void transfer(long position, long count, WritableByteChannel channel) throws IOException;
+  }
+}
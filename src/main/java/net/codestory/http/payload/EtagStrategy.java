@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.util.*;
+
+import net.codestory.http.misc.*;
+
+// Computes the strong ETag of a body.
+//
+@FunctionalInterface
+public interface EtagStrategy {
+  EtagStrategy MD5 = Md5::of;
+  EtagStrategy MURMUR3 = Murmur3::of;
+
+  String of(byte[] data);
+
+  static EtagStrategy forName(String name) {
+    switch (name.toLowerCase(Locale.ROOT)) {
+      case "md5":
+        return MD5;
+      case "murmur3":
+        return MURMUR3;
+      default:
+        throw new IllegalArgumentException("Unknown etag algorithm: " + name);
+    }
+  }
+}
@@ -30,6 +30,7 @@ public class Payload {
   private final Map<String, String> headers;
   private final List<Cookie> cookies;
   private int code;
+  private EtagMode etagMode;
 
   public Payload(Object content) {
     this(null, content);
@@ -51,6 +52,7 @@ public class Payload {
       this.code = wrapped.code;
       this.headers = new LinkedHashMap<>(wrapped.headers);
       this.cookies = new ArrayList<>(wrapped.cookies);
+      this.etagMode = wrapped.etagMode;
       return;
     }
 
@@ -71,6 +73,7 @@ public class Payload {
     this.contentType = contentType;
     this.headers = new LinkedHashMap<>();
     this.cookies = new ArrayList<>();
+    this.etagMode = EtagMode.STRONG;
   }
 
   public Payload withMaxAge(int maxAge) {
@@ -156,6 +159,11 @@ public class Payload {
     return this;
   }
 
+  public Payload withEtagMode(EtagMode etagMode) {
+    this.etagMode = etagMode;
+    return this;
+  }
+
   public String rawContentType() {
     return contentType;
   }
@@ -176,6 +184,10 @@ public class Payload {
     return code;
   }
 
+  public EtagMode etagMode() {
+    return etagMode;
+  }
+
   public boolean isSuccess() {
     return (code >= 200) && (code <= 299);
   }
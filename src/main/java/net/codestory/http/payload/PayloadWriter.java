@@ -25,8 +25,13 @@ import static net.codestory.http.io.Strings.*;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.*;
+import java.nio.channels.*;
 import java.nio.file.*;
+import java.security.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.*;
 import java.util.zip.*;
 
@@ -40,6 +45,12 @@ import net.codestory.http.templating.*;
 import net.codestory.http.types.*;
 
 public class PayloadWriter {
+  private static final int MAX_ETAGS = 10_000;
+  private static final LruCache<String, String> ETAGS_BY_RESOURCE = LruCache.ofSize(MAX_ETAGS, 0L);
+  private static final Map<CacheEntry, String> ETAGS_BY_CACHE_ENTRY = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static final Map<Env, LruCache<String, byte[]>> GZIP_VARIANTS_BY_ENV = Collections.synchronizedMap(new WeakHashMap<>());
+
   protected final Request request;
   protected final Response response;
   protected final Env env;
@@ -104,19 +115,227 @@ public class PayloadWriter {
       return;
     }
 
+    Path path = staticPath(content);
+    if ((path != null) && writeStaticFile(path, payload, contentTypeHeader)) {
+      return;
+    }
+
     if (isStream(content)) {
       streamPayload(uri, payload);
+    } else if ((payload.etagMode() != EtagMode.STRONG) && isJson(content)) {
+      writeJson(payload);
+    } else if ((payload.etagMode() == EtagMode.NONE) && isView(content)) {
+      writeView(uri, payload);
     } else {
       writeBytes(uri, payload);
     }
   }
 
-  protected void writeBytes(String uri, Payload payload) throws IOException {
-    DataSupplier lazyData = DataSupplier.cache(() -> getData(payload.rawContent(), uri));
+  // Files that are served as is, not rendered, are sent straight from the
+  // disk. Pre-compressed .br or .gz siblings are used when the client
+  // supports them, unless they are older than the file.
+  //
+  // Returns false for files that should be compressed on the fly, or
+  // resources that are not on the disk.
+  //
+  protected boolean writeStaticFile(Path path, Payload payload, String contentType) throws IOException {
+    File file = resources.file(path);
+
+    if (canCompress(contentType)) {
+      response.setHeader(VARY, ACCEPT_ENCODING);
+
+      for (String encoding : new String[] {BROTLI, GZIP}) {
+        if (acceptsEncoding(encoding)) {
+          File compressed = resources.file(Paths.get(path + compressedExtension(encoding)));
+          if ((compressed != null) && ((file == null) || (compressed.lastModified() >= file.lastModified()))) {
+            response.setHeader(CONTENT_ENCODING, encoding);
+            writeFile(compressed, payload, false);
+            return true;
+          }
+        }
+      }
+
+      if (shouldGzip() && ((file == null) || (file.length() >= env.gzipThreshold()))) {
+        return false;
+      }
+    }
+
+    if (file == null) {
+      return false;
+    }
+
+    writeFile(file, payload);
+    return true;
+  }
+
+  protected static String compressedExtension(String encoding) {
+    return BROTLI.equals(encoding) ? ".br" : ".gz";
+  }
+
+  protected static Path staticPath(Object content) {
+    Path path = toPath(content);
+    if ((path == null) || ContentTypes.supportsTemplating(path.toString())) {
+      return null;
+    }
+    return path;
+  }
+
+  protected void writeFile(File file, Payload payload) throws IOException {
+    writeFile(file, payload, true);
+  }
+
+  protected void writeFile(File file, Payload payload, boolean allowRanges) throws IOException {
+    long size = file.length();
 
     String etag = payload.headers().get(ETAG);
     if (etag == null) {
-      etag = etag(lazyData.get());
+      etag = etag(size, file.lastModified());
+    }
+
+    String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
+    if (etag.equals(previousEtag)) {
+      response.setStatus(NOT_MODIFIED);
+      return;
+    }
+    response.setHeader(ETAG, etag);
+
+    try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteRange.Source source = (position, count, channel) -> transfer(fileChannel, position, count, channel);
+
+      List<ByteRange> ranges = allowRanges ? requestedRanges(payload, etag, size) : null;
+      if (ranges != null) {
+        writeRanges(ranges, size, request.uri(), payload, source);
+        return;
+      }
+
+      response.setContentLength(size);
+      source.transfer(0, size, response.channel());
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  protected static void transfer(FileChannel fileChannel, long position, long count, WritableByteChannel channel) throws IOException {
+    long sent = 0;
+    while (sent < count) {
+      long transferred = fileChannel.transferTo(position + sent, count - sent, channel);
+      if (transferred <= 0) {
+        break;
+      }
+      sent += transferred;
+    }
+  }
+
+  protected static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  protected boolean supportsRanges(Object content) {
+    if ((content instanceof File) || (content instanceof Path)) {
+      return !ContentTypes.supportsTemplating(toPath(content).toString());
+    }
+    return (content instanceof URL) || (content instanceof byte[]) || (content instanceof CacheEntry);
+  }
+
+  // Returns the ranges to send or null to send the whole content.
+  //
+  protected List<ByteRange> requestedRanges(Payload payload, String etag, long length) throws IOException {
+    if ((payload.code() != OK) || !supportsRanges(payload.rawContent())) {
+      return null;
+    }
+    response.setHeader(ACCEPT_RANGES, "bytes");
+
+    String range = request.header(RANGE);
+    if (range == null) {
+      return null;
+    }
+
+    String ifRange = request.header(IF_RANGE);
+    if ((ifRange != null) && !ifRangeMatches(ifRange, etag, getLastModified(payload))) {
+      return null;
+    }
+
+    return ByteRange.parse(range, length);
+  }
+
+  protected boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+    if (ifRange.startsWith("W/")) {
+      return false;
+    }
+    if (ifRange.startsWith("\"")) {
+      return etag.equals(stripQuotes(ifRange));
+    }
+
+    try {
+      return (lastModified >= 0) && ((lastModified / 1000) == (Dates.parseRfc1123(ifRange) / 1000));
+    } catch (DateTimeException e) {
+      return etag.equals(ifRange);
+    }
+  }
+
+  protected void writeRanges(List<ByteRange> ranges, long length, String uri, Payload payload, ByteRange.Source source) throws IOException {
+    if (ranges.isEmpty()) {
+      response.setStatus(REQUESTED_RANGE_NOT_SATISFIABLE);
+      response.setHeader(CONTENT_RANGE, ByteRange.unsatisfiedRange(length));
+      response.setContentLength(0);
+      return;
+    }
+
+    response.setStatus(PARTIAL_CONTENT);
+
+    try {
+      if (ranges.size() == 1) {
+        ByteRange range = ranges.get(0);
+
+        response.setHeader(CONTENT_RANGE, range.contentRange(length));
+        response.setContentLength(range.length());
+        source.transfer(range.start(), range.length(), response.channel());
+        return;
+      }
+
+      String contentType = contentType(payload, uri);
+      String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+      List<byte[]> partHeaders = new ArrayList<>();
+      long contentLength = 0;
+      for (ByteRange range : ranges) {
+        byte[] partHeader = ("\r\n--" + boundary + "\r\n" + CONTENT_TYPE + ": " + contentType + "\r\n" + CONTENT_RANGE + ": " + range.contentRange(length) + "\r\n\r\n").getBytes(US_ASCII);
+        partHeaders.add(partHeader);
+        contentLength += partHeader.length + range.length();
+      }
+      byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+      contentLength += end.length;
+
+      response.setHeader(CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+      response.setContentLength(contentLength);
+
+      WritableByteChannel channel = response.channel();
+      for (int i = 0; i < ranges.size(); i++) {
+        ByteRange range = ranges.get(i);
+        writeFully(channel, ByteBuffer.wrap(partHeaders.get(i)));
+        source.transfer(range.start(), range.length(), channel);
+      }
+      writeFully(channel, ByteBuffer.wrap(end));
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  protected void writeBytes(String uri, Payload payload) throws IOException {
+    Object content = payload.rawContent();
+    BufferSupplier lazyBuffer = BufferSupplier.cache(() -> getBuffer(content, uri));
+    DataSupplier lazyData = DataSupplier.cache(() -> (content instanceof CacheEntry) ? ((CacheEntry) content).toBytes() : toBytes(lazyBuffer.get()));
+
+    String etag = payload.headers().get(ETAG);
+    boolean contentEtag = (etag == null);
+    if (contentEtag) {
+      etag = memoizedEtag(content, lazyData);
     }
 
     String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
@@ -126,8 +345,111 @@ public class PayloadWriter {
     }
     response.setHeader(ETAG, etag);
 
-    byte[] data = lazyData.get();
-    write(data);
+    ByteBuffer data = lazyBuffer.get();
+    int length = data.remaining();
+
+    List<ByteRange> ranges = requestedRanges(payload, etag, length);
+    if (ranges != null) {
+      writeRanges(ranges, length, uri, payload, (position, count, channel) -> writeFully(channel, slice(data, position, count)));
+      return;
+    }
+
+    boolean compressible = gzipEnabled() && ContentTypes.isCompressible(contentType(payload, uri));
+    if (compressible && (length >= env.gzipThreshold())) {
+      response.setHeader(VARY, ACCEPT_ENCODING);
+    }
+
+    // Only an etag computed from the content can be used as a cache key
+    write(data, lazyData, contentEtag ? etag : null, compressible);
+  }
+
+  // Json is serialized straight to the response, with chunked encoding,
+  // so that it never has to be fully built in memory. A weak etag
+  // is computed by serializing the content once more, without keeping
+  // the bytes.
+  //
+  protected void writeJson(Payload payload) throws IOException {
+    Object content = payload.rawContent();
+
+    String etag = payload.headers().get(ETAG);
+    if ((etag == null) && (payload.etagMode() == EtagMode.WEAK)) {
+      etag = weakEtag(content);
+    }
+
+    if (etag != null) {
+      String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
+      if (etag.equals(previousEtag)) {
+        response.setStatus(NOT_MODIFIED);
+        return;
+      }
+      response.setHeader(ETAG, etag);
+    }
+
+    try {
+      if (shouldGzip()) {
+        response.setHeader(VARY, ACCEPT_ENCODING);
+        response.setHeader(CONTENT_ENCODING, GZIP);
+
+        GZIPOutputStream gzip = new GZIPOutputStream(response.outputStream());
+        TypeConvert.writeJson(content, gzip);
+        gzip.finish();
+      } else {
+        if (gzipEnabled()) {
+          response.setHeader(VARY, ACCEPT_ENCODING);
+        }
+        TypeConvert.writeJson(content, response.outputStream());
+      }
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  // Views without an etag are rendered straight to the response, with
+  // chunked encoding, without building the page in memory.
+  //
+  protected void writeView(String uri, Payload payload) throws IOException {
+    Object content = payload.rawContent();
+    ModelAndView modelAndView = (content instanceof Model) ? ModelAndView.of(uri, (Model) content) : (ModelAndView) content;
+
+    try {
+      OutputStream output = response.outputStream();
+
+      GZIPOutputStream gzip = null;
+      if (shouldGzip()) {
+        response.setHeader(VARY, ACCEPT_ENCODING);
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        gzip = new GZIPOutputStream(output);
+        output = gzip;
+      } else if (gzipEnabled()) {
+        response.setHeader(VARY, ACCEPT_ENCODING);
+      }
+
+      Writer writer = new OutputStreamWriter(output, UTF_8);
+      compilers.renderView(modelAndView.view(), keyValues(modelAndView), writer);
+      writer.flush();
+
+      if (gzip != null) {
+        gzip.finish();
+      }
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  protected boolean isView(Object content) {
+    return (content instanceof ModelAndView) || (content instanceof Model);
+  }
+
+  protected String weakEtag(Object content) throws IOException {
+    MessageDigest digest = Md5.newDigest();
+    try (OutputStream output = new DigestOutputStream(NullOutputStream.INSTANCE, digest)) {
+      TypeConvert.writeJson(content, output);
+    }
+    return "W/" + Hexa.toHex(digest.digest());
   }
 
   protected void writeStreamingHeaders() throws IOException {
@@ -192,16 +514,35 @@ public class PayloadWriter {
   }
 
   protected void write(byte[] data) throws IOException {
+    write(data, null, true);
+  }
+
+  // Gzipped variants are cached by etag, when there's one.
+  //
+  protected void write(byte[] data, String etag, boolean compressible) throws IOException {
+    write(ByteBuffer.wrap(data), () -> data, etag, compressible);
+  }
+
+  // Buffers that are not on the heap, like memory-mapped compiled files,
+  // are written to the socket channel without being copied. They are
+  // only copied to be gzipped, once per etag.
+  //
+  private void write(ByteBuffer data, DataSupplier bytes, String etag, boolean compressible) throws IOException {
     try {
-      if (shouldGzip()) {
-        response.setHeader(CONTENT_ENCODING, GZIP);
+      int length = data.remaining();
 
-        GZIPOutputStream gzip = new GZIPOutputStream(response.outputStream());
-        gzip.write(data);
-        gzip.finish();
+      if (compressible && shouldGzip() && (length >= env.gzipThreshold())) {
+        byte[] gzipped = (etag == null) ? gzip(bytes.get()) : gzipVariants().computeIfAbsent(etag, key -> gzipUnchecked(bytes));
+
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        response.setContentLength(gzipped.length);
+        response.outputStream().write(gzipped);
+      } else if (data.hasArray()) {
+        response.setContentLength(length);
+        response.outputStream().write(toBytes(data));
       } else {
-        response.setContentLength(data.length);
-        response.outputStream().write(data);
+        response.setContentLength(length);
+        writeFully(response.channel(), data);
       }
     } catch (IOException e) {
       if (!shouldIgnoreError(e)) {
@@ -210,8 +551,70 @@ public class PayloadWriter {
     }
   }
 
+  private static byte[] gzipUnchecked(DataSupplier bytes) {
+    try {
+      return gzip(bytes.get());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  protected static ByteBuffer slice(ByteBuffer buffer, long position, long count) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(buffer.position() + (int) position);
+    slice.limit(slice.position() + (int) count);
+    return slice;
+  }
+
+  protected static byte[] toBytes(ByteBuffer buffer) {
+    if (buffer.hasArray() && (buffer.arrayOffset() == 0) && (buffer.position() == 0) && (buffer.remaining() == buffer.array().length)) {
+      return buffer.array();
+    }
+
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  protected static byte[] gzip(byte[] data) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, data.length / 4));
+    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+      gzip.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to gzip", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  // Each server, with its own Env, has its own cache sized from it
+  //
+  protected LruCache<String, byte[]> gzipVariants() {
+    return GZIP_VARIANTS_BY_ENV.computeIfAbsent(env, key -> new LruCache<>(key.gzipCacheSize(), 0L, bytes -> bytes.length));
+  }
+
+  protected boolean gzipEnabled() {
+    return !env.disableGzip() && env.prodMode();
+  }
+
   protected boolean shouldGzip() {
-    return !env.disableGzip() && env.prodMode() && request.header(ACCEPT_ENCODING, "").contains(GZIP);
+    return gzipEnabled() && acceptsEncoding(GZIP);
+  }
+
+  // Compression depends on the Accept-Encoding header
+  //
+  protected boolean canCompress(String contentType) {
+    return gzipEnabled() && ContentTypes.isCompressible(contentType);
+  }
+
+  protected boolean acceptsEncoding(String encoding) {
+    for (String accepted : request.header(ACCEPT_ENCODING, "").split(",")) {
+      int semicolon = accepted.indexOf(';');
+      String name = ((semicolon == -1) ? accepted : accepted.substring(0, semicolon)).trim();
+      if (name.equalsIgnoreCase(encoding)) {
+        return (semicolon == -1) || !accepted.substring(semicolon + 1).replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
   }
 
   protected boolean shouldIgnoreError(IOException e) {
@@ -226,13 +629,99 @@ public class PayloadWriter {
   }
 
   protected String etag(byte[] data) {
-    return Md5.of(data);
+    return EtagStrategy.forName(env.etagAlgorithm()).of(data);
+  }
+
+  // Etags of contents that can't change are memoized, so that a 304 can
+  // be sent without reading, compiling or hashing the body.
+  //
+  private String memoizedEtag(Object content, DataSupplier data) throws IOException {
+    if (content instanceof CacheEntry) {
+      CacheEntry cacheEntry = (CacheEntry) content;
+
+      String etag = ETAGS_BY_CACHE_ENTRY.get(cacheEntry);
+      if (etag == null) {
+        etag = etag(data.get());
+        ETAGS_BY_CACHE_ENTRY.put(cacheEntry, etag);
+      }
+      return etag;
+    }
+
+    String key = resourceKey(content);
+    if (key == null) {
+      return etag(data.get());
+    }
+
+    String etag = ETAGS_BY_RESOURCE.get(key);
+    if (etag == null) {
+      etag = etag(data.get());
+      ETAGS_BY_RESOURCE.put(key, etag);
+    }
+    return etag;
+  }
+
+  // Identifies a version of a static file, a compiled file in prod mode
+  // or a url in prod mode. Returns null for any other content.
+  //
+  protected String resourceKey(Object content) {
+    String algorithm = env.etagAlgorithm() + ':';
+
+    Path path = staticPath(content);
+    if (path != null) {
+      File file = resources.file(path);
+      return (file == null) ? null : algorithm + fileKey(file);
+    }
+
+    if (env.prodMode() && (content instanceof SourceFile)) {
+      Path sourcePath = ((SourceFile) content).getPath();
+      if (ContentTypes.supportsTemplating(sourcePath.toString())) {
+        return null;
+      }
+
+      File file = resources.file(sourcePath);
+      return (file == null) ? null : algorithm + "compiled:" + fileKey(file);
+    }
+
+    if (env.prodMode() && (content instanceof URL)) {
+      return algorithm + ((URL) content).toExternalForm();
+    }
+
+    return null;
+  }
+
+  private static String fileKey(File file) {
+    return file.getAbsolutePath() + ':' + file.lastModified() + ':' + file.length();
+  }
+
+  protected String etag(long size, long lastModified) {
+    return Long.toHexString(lastModified) + '-' + Long.toHexString(size);
+  }
+
+  // Content that getData would serialize to json
+  //
+  protected boolean isJson(Object content) {
+    return (content != null)
+      && !(content instanceof File)
+      && !(content instanceof Path)
+      && !(content instanceof SourceFile)
+      && !(content instanceof URL)
+      && !(content instanceof byte[])
+      && !(content instanceof String)
+      && !(content instanceof CacheEntry)
+      && !(content instanceof ModelAndView)
+      && !(content instanceof Model)
+      && !isStream(content);
   }
 
   protected boolean isStream(Object content) {
     return (content instanceof Stream<?>) || (content instanceof BufferedReader) || (content instanceof InputStream);
   }
 
+  protected String contentType(Payload payload, String uri) {
+    String contentType = payload.rawContentType();
+    return (contentType != null) ? contentType : getContentType(payload.rawContent(), uri);
+  }
+
   protected String getContentType(Object content, String uri) {
     if (content instanceof File) {
       File file = (File) content;
@@ -280,6 +769,19 @@ public class PayloadWriter {
     return "application/json;charset=UTF-8";
   }
 
+  // Compiled files are kept as buffers, possibly memory-mapped, that
+  // can be written without a copy.
+  //
+  protected ByteBuffer getBuffer(Object content, String uri) throws IOException {
+    if (content instanceof CacheEntry) {
+      return ((CacheEntry) content).toByteBuffer();
+    }
+    if ((content instanceof SourceFile) && !ContentTypes.supportsTemplating(((SourceFile) content).getPath().toString())) {
+      return compilers.compile((SourceFile) content).toByteBuffer();
+    }
+    return ByteBuffer.wrap(getData(content, uri));
+  }
+
   protected byte[] getData(Object content, String uri) throws IOException {
     if (content == null) {
       return null;
@@ -325,15 +827,23 @@ public class PayloadWriter {
       return Dates.parseRfc1123(lastModified);
     }
 
-    Object content = payload.rawContent();
+    Path path = toPath(payload.rawContent());
+    if (path != null) {
+      File file = resources.file(path);
+      return (file == null) ? -1 : file.lastModified();
+    }
+
+    return -1;
+  }
+
+  protected static Path toPath(Object content) {
     if (content instanceof File) {
-      return ((File) content).lastModified();
+      return ((File) content).toPath();
     }
     if (content instanceof Path) {
-      return ((Path) content).toFile().lastModified();
+      return (Path) content;
     }
-
-    return -1;
+    return null;
   }
 
   protected byte[] forString(String value) {
@@ -341,6 +851,11 @@ public class PayloadWriter {
   }
 
   protected byte[] forModelAndView(ModelAndView modelAndView) {
+    String body = compilers.renderView(modelAndView.view(), keyValues(modelAndView));
+    return forString(body);
+  }
+
+  protected Map<String, Object> keyValues(ModelAndView modelAndView) {
     Map<String, Object> keyValues = new HashMap<>();
     keyValues.putAll(modelAndView.model().keyValues());
     keyValues.put("cookies", request.cookies().keyValues());
@@ -348,9 +863,7 @@ public class PayloadWriter {
     keyValues.put("site", site);
     keyValues.put("request", request);
     keyValues.put("response", response);
-
-    String body = compilers.renderView(modelAndView.view(), keyValues);
-    return forString(body);
+    return keyValues;
   }
 
   protected byte[] forURL(URL url) throws IOException {
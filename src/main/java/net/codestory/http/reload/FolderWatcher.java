@@ -24,13 +24,16 @@ import java.io.*;
 import java.nio.file.*;
 import java.util.function.*;
 
+// Reports the files, or folders, that were created, modified or deleted.
+// Reports the watched folder itself when events were lost.
+//
 class FolderWatcher {
   private final Path folder;
-  private final Consumer<WatchEvent<?>> action;
+  private final Consumer<Path> action;
 
   private boolean started;
 
-  FolderWatcher(Path folder, Consumer<WatchEvent<?>> action) {
+  FolderWatcher(Path folder, Consumer<Path> action) {
     this.folder = folder;
     this.action = action;
   }
@@ -53,25 +56,47 @@ class FolderWatcher {
   private WatchService createWatcher() {
     try {
       WatchService watcher = folder.getFileSystem().newWatchService();
-
-      walkFileTree(folder, onDirectory(dir -> dir.register(watcher, new WatchEvent.Kind[]{ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE}, HIGH)));
-
+      register(watcher, folder);
       return watcher;
     } catch (IOException e) {
       throw new IllegalStateException("Unable to watch folder " + folder, e);
     }
   }
 
+  private static void register(WatchService watcher, Path root) throws IOException {
+    walkFileTree(root, onDirectory(dir -> dir.register(watcher, new WatchEvent.Kind[]{ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE}, HIGH)));
+  }
+
   private void onChange(WatchService watcher) {
     while (true) {
       try {
         WatchKey take = watcher.take();
         // consume all events of this shitty API
-        take.pollEvents().forEach(action);
+        for (WatchEvent<?> event : take.pollEvents()) {
+          onEvent(watcher, (Path) take.watchable(), event);
+        }
         take.reset();
       } catch (InterruptedException e) {
         // Ignore
       }
     }
   }
+
+  private void onEvent(WatchService watcher, Path dir, WatchEvent<?> event) {
+    if (event.kind() == OVERFLOW) {
+      action.accept(folder);
+      return;
+    }
+
+    Path path = dir.resolve((Path) event.context());
+    if ((event.kind() == ENTRY_CREATE) && isDirectory(path)) {
+      try {
+        register(watcher, path);
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+
+    action.accept(path);
+  }
 }
@@ -37,7 +37,7 @@ class ReloadingRoutesProvider implements RoutesProvider {
 
   private List<FolderWatcher> classesWatchers;
   private FolderWatcher appWatcher;
-  private RouteCollection routes;
+  private volatile RouteCollection routes;
 
   ReloadingRoutesProvider(Env env, Configuration configuration) {
     this.env = env;
@@ -68,12 +68,12 @@ class ReloadingRoutesProvider implements RoutesProvider {
         routes.configure(configuration);
 
         if (classesWatchers == null) {
-          this.classesWatchers = classpathFolders().map(path -> new FolderWatcher(path, ev -> dirty.set(true))).collect(toList());
+          this.classesWatchers = classpathFolders().map(path -> new FolderWatcher(path, changed -> dirty.set(true))).collect(toList());
         }
         classesWatchers.forEach(FolderWatcher::ensureStarted);
 
         if (appWatcher == null) {
-          this.appWatcher = new FolderWatcher(env.appPath(), ev -> dirty.set(true));
+          this.appWatcher = new FolderWatcher(env.appPath(), this::appChanged);
         }
         appWatcher.ensureStarted();
       } catch (Exception e) {
@@ -85,4 +85,18 @@ class ReloadingRoutesProvider implements RoutesProvider {
 
     return routes;
   }
+
+  // Changes to the app folder don't require the routes to be configured
+  // again. Only the caches and the site entries for the changed files
+  // are refreshed.
+  //
+  private void appChanged(Path changed) {
+    RouteCollection current = routes;
+    if ((current == null) || changed.equals(env.appPath())) {
+      dirty.set(true);
+      return;
+    }
+
+    current.fileChanged(Resources.relativePath(env.appPath(), changed));
+  }
 }
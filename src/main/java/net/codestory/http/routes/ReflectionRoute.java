@@ -45,6 +45,7 @@ class ReflectionRoute implements AnyRoute {
 
       Payload payload = new Payload(contentType, body);
       setCorsHeaders(payload);
+      setEtagMode(payload);
 
       return payload;
     } catch (RuntimeException e) {
@@ -86,6 +87,14 @@ class ReflectionRoute implements AnyRoute {
     }
   }
 
+  private void setEtagMode(Payload finalPayload) {
+    if (method.isAnnotationPresent(NoEtag.class)) {
+      finalPayload.withEtagMode(EtagMode.NONE);
+    } else if (method.isAnnotationPresent(WeakEtag.class)) {
+      finalPayload.withEtagMode(EtagMode.WEAK);
+    }
+  }
+
   static Object[] convert(Context context, String[] pathParameters, Type... types) throws IOException {
     Object[] converted = new Object[types.length];
 
@@ -54,8 +54,12 @@ public class RouteCollection implements Routes {
   protected IocAdapter iocAdapter;
   protected Extensions extensions;
   protected Route[] sortedRoutes;
+  protected RouteTree routeTree;
   protected WebSocketListenerFactory webSocketListenerFactory;
 
+  private WebJarsRoute webJarsRoute;
+  private StaticRoute staticRoute;
+
   public RouteCollection(Env env) {
     this.env = env;
     this.resources = new Resources(env);
@@ -72,8 +76,10 @@ public class RouteCollection implements Routes {
     configuration.configure(this);
     installExtensions();
     addStaticRoutes(env.prodMode());
+    warmUpIndex(env.prodMode());
 
     sortedRoutes = routes.getSortedRoutes();
+    routeTree = new RouteTree(sortedRoutes);
   }
 
   private void installExtensions() {
@@ -82,14 +88,38 @@ public class RouteCollection implements Routes {
   }
 
   private void addStaticRoutes(boolean prodMode) {
-    routes.addStaticRoute(new WebJarsRoute(prodMode));
-    routes.addStaticRoute(new StaticRoute(prodMode, resources, compilers));
+    webJarsRoute = new WebJarsRoute(prodMode);
+    staticRoute = new StaticRoute(prodMode, resources, compilers);
+
+    routes.addStaticRoute(webJarsRoute);
+    routes.addStaticRoute(staticRoute);
     if (!prodMode) {
       routes.addStaticRoute(new SourceMapRoute(resources, compilers));
       routes.addStaticRoute(new SourceRoute(resources));
     }
   }
 
+  private void warmUpIndex(boolean prodMode) {
+    if (prodMode) {
+      resources.index();
+      site.warmUp();
+    }
+  }
+
+  public void invalidateCaches() {
+    if (webJarsRoute != null) {
+      webJarsRoute.invalidateCache();
+    }
+    if (staticRoute != null) {
+      staticRoute.invalidateCache();
+    }
+  }
+
+  public void fileChanged(String path) {
+    invalidateCaches();
+    site.update(path);
+  }
+
   public PayloadWriter createPayloadWriter(Request request, Response response) {
     return extensions.createPayloadWriter(request, response, env, site, resources, compilers);
   }
@@ -462,25 +492,7 @@ public class RouteCollection implements Routes {
       return notFound();
     }
 
-    PayloadSupplier payloadSupplier = () -> {
-      Payload response = notFound();
-
-      for (Route route : sortedRoutes) {
-        if (route.matchUri(uri)) {
-          if (route.matchMethod(context.method())) {
-            return route.apply(uri, context);
-          }
-          response = methodNotAllowed();
-        } else if (!uri.endsWith("/") && route.matchUri(uri + '/')) {
-          if (route.matchMethod(context.method())) {
-            return seeOther(uri + '/');
-          }
-          response = methodNotAllowed();
-        }
-      }
-
-      return response;
-    };
+    PayloadSupplier payloadSupplier = () -> routeTree.apply(uri, context);
 
     for (Supplier<Filter> filterSupplier : filters) {
       Filter filter = filterSupplier.get();
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static net.codestory.http.constants.Headers.*;
+import static net.codestory.http.constants.Methods.*;
+import static net.codestory.http.payload.Payload.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import net.codestory.http.*;
+import net.codestory.http.payload.*;
+
+// Routes compiled into a tree of uri segments. Finding the routes
+// that match an uri costs as much as the uri's depth, whatever the
+// number of routes.
+//
+// Precedence is the same as the one of the sorted routes: first route
+// to match both the uri (or uri + '/') and the method wins.
+//
+// Routes that are not in the tree (static files, webjars, catch-alls...)
+// are partitioned by method so that a request only probes the routes
+// that could serve its method. Others are only probed to tell a 405
+// from a 404. The methods are the standard ones plus those declared by
+// the routes, PATCH for example.
+//
+// Static routes that only serve GET and HEAD, like files and webjars,
+// are never probed for a 405: they would look for a file on every
+// unmatched POST or PUT. A GET request has already tried them.
+//
+public class RouteTree {
+  private static final String[] STANDARD_METHODS = {GET, HEAD, POST, PUT, DELETE, OPTIONS, TRACE, CONNECT};
+  private static final Set<String> GET_AND_HEAD = new HashSet<>(Arrays.asList(GET, HEAD));
+
+  private final Node root;
+  private final Set<String> methods;
+  private final Route[] otherRoutes;
+  private final Map<String, Route[]> otherRoutesByMethod;
+  private final Route[] notAllowedRoutes;
+  private final Map<Route, Set<String>> allowedByRoute;
+
+  public RouteTree(Route[] sortedRoutes) {
+    this.root = new Node();
+    this.methods = methods(sortedRoutes);
+
+    List<Route> others = new ArrayList<>();
+    for (int index = 0; index < sortedRoutes.length; index++) {
+      Route route = sortedRoutes[index];
+      if (route instanceof RouteWithPattern) {
+        add(index, (RouteWithPattern) route);
+      } else {
+        others.add(route);
+      }
+    }
+    this.otherRoutes = others.toArray(new Route[others.size()]);
+
+    this.otherRoutesByMethod = new HashMap<>();
+    for (String method : methods) {
+      otherRoutesByMethod.put(method, otherRoutes(method));
+    }
+
+    this.allowedByRoute = new IdentityHashMap<>();
+    for (Route route : otherRoutes) {
+      allowedByRoute.put(route, allowedMethods(route));
+    }
+    this.notAllowedRoutes = Stream.of(otherRoutes).filter(route -> !servesFilesOnly(route)).toArray(Route[]::new);
+  }
+
+  private static Set<String> methods(Route[] routes) {
+    Set<String> methods = new TreeSet<>(Arrays.asList(STANDARD_METHODS));
+    for (Route route : routes) {
+      if (route instanceof RouteWithPattern) {
+        methods.add(((RouteWithPattern) route).method().toUpperCase(Locale.ROOT));
+      } else if ((route instanceof CatchAllRoute) && !"ANY".equals(((CatchAllRoute) route).getMethod())) {
+        methods.add(((CatchAllRoute) route).getMethod());
+      }
+    }
+    return methods;
+  }
+
+  private Route[] otherRoutes(String method) {
+    return Stream.of(otherRoutes).filter(route -> route.matchMethod(method)).toArray(Route[]::new);
+  }
+
+  private Set<String> allowedMethods(Route route) {
+    Set<String> allowed = new TreeSet<>();
+    for (String method : methods) {
+      if (route.matchMethod(method)) {
+        allowed.add(method);
+      }
+    }
+    return allowed;
+  }
+
+  private boolean servesFilesOnly(Route route) {
+    return !(route instanceof CatchAllRoute) && GET_AND_HEAD.containsAll(allowedByRoute.get(route));
+  }
+
+  private void add(int index, RouteWithPattern route) {
+    Node node = root;
+    for (String part : route.uriParser().patternParts()) {
+      node = part.startsWith(":") ? node.param() : node.literal(part);
+    }
+    node.add(new Leaf(index, route));
+  }
+
+  public Payload apply(String uri, Context context) throws Exception {
+    String method = context.method().toUpperCase(Locale.ROOT);
+    boolean withSlash = !uri.endsWith("/");
+
+    List<Node> exactMatches = new ArrayList<>(2);
+    List<Node> slashMatches = new ArrayList<>(2);
+    collect(root, uri, 0, uriLength(uri), exactMatches, withSlash ? slashMatches : null);
+
+    Leaf exact = first(exactMatches, method);
+    Leaf slash = first(slashMatches, method);
+    if ((exact != null) && ((slash == null) || (exact.index < slash.index))) {
+      return exact.route.apply(uri, context);
+    }
+    if (slash != null) {
+      return seeOther(uri + '/');
+    }
+
+    Route[] routesForMethod = otherRoutesByMethod.get(method);
+    if (routesForMethod == null) {
+      routesForMethod = otherRoutes(method);
+    }
+
+    for (Route route : routesForMethod) {
+      if (route.matchUri(uri)) {
+        return route.apply(uri, context);
+      }
+      if (withSlash && route.matchUri(uri + '/')) {
+        return seeOther(uri + '/');
+      }
+    }
+
+    return notFoundOrNotAllowed(uri, method, withSlash, exactMatches, slashMatches);
+  }
+
+  // Only called when no route can serve the request: collect the
+  // methods allowed on this uri to tell a 405 from a 404.
+  //
+  private Payload notFoundOrNotAllowed(String uri, String method, boolean withSlash, List<Node> exactMatches, List<Node> slashMatches) {
+    Set<String> allowed = new TreeSet<>();
+    for (Node node : exactMatches) {
+      allowed.addAll(node.allowed());
+    }
+    for (Node node : slashMatches) {
+      allowed.addAll(node.allowed());
+    }
+
+    for (Route route : notAllowedRoutes) {
+      if (!route.matchMethod(method) && (route.matchUri(uri) || (withSlash && route.matchUri(uri + '/')))) {
+        allowed.addAll(allowedByRoute.get(route));
+      }
+    }
+
+    if (allowed.isEmpty()) {
+      return notFound();
+    }
+    return methodNotAllowed().withHeader(ALLOW, String.join(", ", allowed));
+  }
+
+  // Walks the tree, one uri segment at a time, without splitting the uri.
+  // Nodes reached by the whole uri are exact matches. Nodes reached by
+  // the uri followed by an empty segment match the uri + '/'.
+  //
+  private static void collect(Node node, String uri, int start, int length, List<Node> exactMatches, List<Node> slashMatches) {
+    int end = uri.indexOf('/', start);
+    boolean lastSegment = (end == -1) || (end >= length);
+    if (lastSegment) {
+      end = length;
+    }
+
+    Node literal = node.literals.get(uri.substring(start, end));
+    Node param = ((node.param != null) && (!lastSegment || (end > start))) ? node.param : null;
+
+    if (lastSegment) {
+      addMatches(literal, exactMatches, slashMatches);
+      addMatches(param, exactMatches, slashMatches);
+    } else {
+      if (literal != null) {
+        collect(literal, uri, end + 1, length, exactMatches, slashMatches);
+      }
+      if (param != null) {
+        collect(param, uri, end + 1, length, exactMatches, slashMatches);
+      }
+    }
+  }
+
+  private static void addMatches(Node node, List<Node> exactMatches, List<Node> slashMatches) {
+    if (node == null) {
+      return;
+    }
+    if (!node.leaves.isEmpty()) {
+      exactMatches.add(node);
+    }
+    if (slashMatches != null) {
+      Node withSlash = node.literals.get("");
+      if ((withSlash != null) && !withSlash.leaves.isEmpty()) {
+        slashMatches.add(withSlash);
+      }
+    }
+  }
+
+  private static Leaf first(List<Node> nodes, String method) {
+    Leaf first = null;
+    for (Node node : nodes) {
+      Leaf leaf = node.forMethod(method);
+      if ((leaf != null) && ((first == null) || (leaf.index < first.index))) {
+        first = leaf;
+      }
+    }
+    return first;
+  }
+
+  private static int uriLength(String uri) {
+    int indexQuery = uri.indexOf('?');
+    return (indexQuery == -1) ? uri.length() : indexQuery;
+  }
+
+  private static class Node {
+    private final Map<String, Node> literals = new HashMap<>();
+    private final List<Leaf> leaves = new ArrayList<>();
+    private final Map<String, Leaf> leafByMethod = new HashMap<>();
+    private Node param;
+
+    Node literal(String part) {
+      return literals.computeIfAbsent(part, key -> new Node());
+    }
+
+    Node param() {
+      if (param == null) {
+        param = new Node();
+      }
+      return param;
+    }
+
+    // Leaves are added in the order of the sorted routes
+    // so the first leaf registered for a method wins.
+    //
+    void add(Leaf leaf) {
+      leaves.add(leaf);
+
+      String method = leaf.route.method().toUpperCase(Locale.ROOT);
+      leafByMethod.putIfAbsent(method, leaf);
+      if (GET.equals(method)) {
+        leafByMethod.putIfAbsent(HEAD, leaf);
+      }
+    }
+
+    Leaf forMethod(String method) {
+      return leafByMethod.get(method);
+    }
+
+    Set<String> allowed() {
+      return leafByMethod.keySet();
+    }
+  }
+
+  private static class Leaf {
+    private final int index;
+    private final RouteWithPattern route;
+
+    Leaf(int index, RouteWithPattern route) {
+      this.index = index;
+      this.route = route;
+    }
+  }
+}
@@ -46,6 +46,10 @@ class RouteWithPattern implements Route {
     return route.body(context, parameters);
   }
 
+  String method() {
+    return method;
+  }
+
   UriParser uriParser() {
     return uriParser;
   }
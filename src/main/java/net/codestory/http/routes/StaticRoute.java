@@ -18,12 +18,11 @@ package net.codestory.http.routes;
 import net.codestory.http.Context;
 import net.codestory.http.compilers.CompilerFacade;
 import net.codestory.http.io.Resources;
-import net.codestory.http.misc.Cache;
+import net.codestory.http.misc.LookupCache;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.function.*;
 
 import static net.codestory.http.constants.Methods.GET;
 import static net.codestory.http.constants.Methods.HEAD;
@@ -31,21 +30,29 @@ import static net.codestory.http.io.Strings.extension;
 
 class StaticRoute implements Route {
   private static final Path NOT_FOUND = Paths.get("");
+  private static final int MAX_HITS = 10_000;
+  private static final int MAX_MISSES = 1_000;
+  private static final long DEV_TTL_MILLIS = 1_000L;
 
   private final Resources resources;
   private final CompilerFacade compilers;
-  private final Function<String, Object> findPath;
+  private final LookupCache<String, Object> findPath;
 
-  StaticRoute(boolean cached, Resources resources, CompilerFacade compilers) {
-    if (cached) {
-      this.findPath = new Cache<>(uri -> findPath(uri));
-    } else {
-      this.findPath = uri -> findPath(uri);
-    }
+  StaticRoute(boolean prodMode, Resources resources, CompilerFacade compilers) {
+    // In dev mode, the reload watcher invalidates the cache when files change.
+    // The short ttl covers the delay before the watcher is notified.
+    //
+    long ttlMillis = prodMode ? 0L : DEV_TTL_MILLIS;
+
+    this.findPath = new LookupCache<>(uri -> findPath(uri), path -> path == NOT_FOUND, MAX_HITS, MAX_MISSES, ttlMillis);
     this.resources = resources;
     this.compilers = compilers;
   }
 
+  void invalidateCache() {
+    findPath.invalidateAll();
+  }
+
   @Override
   public boolean matchUri(String uri) {
     return findPath.apply(uri) != NOT_FOUND;
@@ -21,26 +21,38 @@ import net.codestory.http.*;
 import net.codestory.http.io.*;
 
 public class UriParser implements Comparable<UriParser> {
+  private static final String[] NO_PARAMS = new String[0];
+
   private final String[] patternParts;
+  private final boolean[] paramParts;
   private final String[] queryParamsParts;
   private final int paramsCount;
 
   public UriParser(String uriPattern) {
     this.patternParts = parts(stripQueryParams(uriPattern));
+    this.paramParts = paramParts(patternParts);
     this.queryParamsParts = queryParamsParts(extractQueryParams(uriPattern));
     this.paramsCount = paramsCount(uriPattern);
   }
 
+  // Scans the uri once, only allocating the parameters' values
+  //
   public String[] params(String uri, Query query) {
-    String[] uriParts = parts(uri);
+    if (paramsCount == 0) {
+      return NO_PARAMS;
+    }
 
     String[] params = new String[paramsCount];
 
     int index = 0;
-    for (int i = 0; i < uriParts.length; i++) {
-      if (patternParts[i].startsWith(":")) {
-        params[index++] = uriParts[i];
+    int length = uriLength(uri);
+    int start = 0;
+    for (int i = 0; (i < patternParts.length) && (start <= length); i++) {
+      int end = segmentEnd(uri, start, length);
+      if (paramParts[i]) {
+        params[index++] = uri.substring(start, end);
       }
+      start = end + 1;
     }
     for (int i = 0; i < queryParamsParts.length; i++) {
       if (queryParamsParts[i].startsWith(":")) {
@@ -51,26 +63,61 @@ public class UriParser implements Comparable<UriParser> {
     return params;
   }
 
+  // Compares the uri to the pattern in place, without splitting it
+  //
   public boolean matches(String uri) {
-    String[] uriParts = parts(stripQueryParams(uri));
-    if (patternParts.length != uriParts.length) {
-      return false;
-    }
+    int length = uriLength(uri);
+    int lastPart = patternParts.length - 1;
 
-    for (int i = 0; i < patternParts.length; i++) {
-      if (!patternParts[i].startsWith(":") && !patternParts[i].equals(uriParts[i])) {
+    int start = 0;
+    for (int i = 0; i <= lastPart; i++) {
+      if (start > length) {
         return false;
       }
+
+      int end = segmentEnd(uri, start, length);
+      if (paramParts[i]) {
+        if ((i == lastPart) && (end == start)) {
+          return false;
+        }
+      } else {
+        String part = patternParts[i];
+        if (((end - start) != part.length()) || !uri.regionMatches(start, part, 0, part.length())) {
+          return false;
+        }
+      }
+      start = end + 1;
     }
 
-    int lastPart = patternParts.length - 1;
-    return !(patternParts[lastPart].startsWith(":") && uriParts[lastPart].isEmpty());
+    return start == (length + 1);
+  }
+
+  String[] patternParts() {
+    return patternParts;
   }
 
   private static String[] parts(String uri) {
     return uri.split("/", -1);
   }
 
+  private static boolean[] paramParts(String[] parts) {
+    boolean[] paramParts = new boolean[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      paramParts[i] = parts[i].startsWith(":");
+    }
+    return paramParts;
+  }
+
+  private static int uriLength(String uri) {
+    int indexQuery = uri.indexOf('?');
+    return (indexQuery == -1) ? uri.length() : indexQuery;
+  }
+
+  private static int segmentEnd(String uri, int start, int length) {
+    int indexSlash = uri.indexOf('/', start);
+    return ((indexSlash == -1) || (indexSlash > length)) ? length : indexSlash;
+  }
+
   private static String[] queryParamsParts(String uri) {
     return uri.split("[=&]", -1);
   }
@@ -35,12 +35,21 @@ import net.codestory.http.misc.*;
 import net.codestory.http.payload.*;
 
 class WebJarsRoute implements Route {
+  private static final int MAX_HITS = 1_000;
+  private static final int MAX_MISSES = 1_000;
+
   private final boolean prodMode;
   private final WebJarUrlFinder webJarUrlFinder;
+  private final LookupCache<String, Optional<URL>> getResource;
 
   public WebJarsRoute(boolean prodMode) {
     this.prodMode = prodMode;
     this.webJarUrlFinder = new WebJarUrlFinder(prodMode);
+    this.getResource = new LookupCache<>(uri -> Optional.ofNullable(getResource(uri)), url -> !url.isPresent(), MAX_HITS, MAX_MISSES, 0L);
+  }
+
+  void invalidateCache() {
+    getResource.invalidateAll();
   }
 
   @Override
@@ -50,7 +59,7 @@ class WebJarsRoute implements Route {
       return false;
     }
 
-    if (!uri.endsWith("/") && (getResource(uri) != null)) {
+    if (!uri.endsWith("/") && getResource.apply(uri).isPresent()) {
       return true;
     }
 
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.templating;
+
+import java.io.*;
+
+// Forwards what a layout renders to another writer, except for the
+// [[body]] slot, that is replaced with the body rendered in place.
+//
+// Only the few characters that could start the slot are held back.
+//
+class BodySlotWriter extends Writer {
+  static final String SLOT = "[[body]]";
+
+  private final Writer writer;
+  private final Body body;
+  private int matched;
+
+  BodySlotWriter(Writer writer, Body body) {
+    this.writer = writer;
+    this.body = body;
+  }
+
+  @FunctionalInterface
+  interface Body {
+    void write() throws IOException;
+  }
+
+  @Override
+  public void write(char[] chars, int offset, int length) throws IOException {
+    int start = offset;
+    int end = offset + length;
+
+    for (int i = offset; i < end; i++) {
+      char c = chars[i];
+      if ((matched == 0) && (c != SLOT.charAt(0))) {
+        continue;
+      }
+
+      if (i > start) {
+        writer.write(chars, start, i - start);
+      }
+      scan(c);
+      start = i + 1;
+    }
+
+    if (start < end) {
+      writer.write(chars, start, end - start);
+    }
+  }
+
+  private void scan(char c) throws IOException {
+    if (c == SLOT.charAt(matched)) {
+      matched++;
+      if (matched == SLOT.length()) {
+        matched = 0;
+        body.write();
+      }
+      return;
+    }
+
+    if (matched == 0) {
+      writer.write(c);
+      return;
+    }
+
+    // Not the slot after all: release the first held back character
+    // and look for the slot again in the others.
+    //
+    int heldBack = matched;
+    matched = 0;
+    writer.write(SLOT.charAt(0));
+    for (int i = 1; i < heldBack; i++) {
+      scan(SLOT.charAt(i));
+    }
+    scan(c);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  // Doesn't close the underlying writer
+  //
+  @Override
+  public void close() throws IOException {
+    if (matched > 0) {
+      writer.write(SLOT, 0, matched);
+      matched = 0;
+    }
+  }
+}
@@ -51,7 +51,19 @@ public class HandlebarsCompiler {
   }
 
   public String compile(String template, Map<String, ?> variables) throws IOException {
-    return handlebars.compileInline(template).apply(context(variables));
+    return apply(compile(template), variables);
+  }
+
+  public Template compile(String template) throws IOException {
+    return handlebars.compileInline(template);
+  }
+
+  public String apply(Template template, Map<String, ?> variables) throws IOException {
+    return template.apply(context(variables));
+  }
+
+  public void apply(Template template, Map<String, ?> variables, Writer writer) throws IOException {
+    template.apply(context(variables), writer);
   }
 
   private static Handlebars handlebars(Env env, Resources resources, CompilerFacade compilers) {
@@ -72,11 +84,8 @@ public class HandlebarsCompiler {
             throw new IOException("Template not found " + location);
           }
 
-          String body = resources.sourceFile(include).getSource();
-
-          if (MarkdownCompiler.supports(include)) {
-            body = MarkdownCompiler.INSTANCE.compile(body);
-          }
+          SourceFile sourceFile = resources.sourceFile(include);
+          String body = MarkdownCompiler.supports(include) ? compilers.markdown(sourceFile) : sourceFile.getSource();
 
           return new StringTemplateSource(location, body);
         }
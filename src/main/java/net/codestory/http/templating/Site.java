@@ -15,99 +15,183 @@
  */
 package net.codestory.http.templating;
 
-import static java.nio.file.Files.*;
-import static java.util.Collections.emptyMap;
+import static java.util.Collections.*;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 import static net.codestory.http.io.FileVisitor.*;
-import static net.codestory.http.io.Resources.*;
-import static net.codestory.http.misc.MemoizingSupplier.*;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-import java.util.function.*;
 import java.util.stream.Collectors;
 
 import net.codestory.http.convert.*;
 import net.codestory.http.io.*;
 import net.codestory.http.misc.*;
+import net.codestory.http.types.*;
 
 import com.github.jknack.handlebars.*;
 
+// The config, the list of resources and the pages are each read lazily,
+// on first access, and published through a volatile reference. Reading
+// [[site.title]] never parses the pages, and listing the resources never
+// parses anything. Readers never block and never see a half updated model.
+//
+// Only files that support templating, like .html or .md, are parsed for a
+// front matter. Other files, like images, are not pages.
+//
+// When a file changes, the parts that were already read are updated,
+// parsing only the files that changed. Unchanged pages and data are shared
+// between snapshots.
+//
 public class Site {
+  private static final String CONFIG = "_config.yml";
+
+  private final Env env;
   private final Resources resources;
-  private final Supplier<Set<String>> resourceList;
-  private final Supplier<Map<String, Object>> yaml;
-  private final Supplier<Map<String, Object>> data;
-  private final Supplier<List<Map<String, Object>>> pages;
-  private final Supplier<Map<String, List<Map<String, Object>>>> tags;
-  private final Supplier<Map<String, List<Map<String, Object>>>> categories;
+
+  private volatile Map<String, Object> yaml;
+  private volatile NavigableSet<String> resourceList;
+  private volatile Content content;
 
   public Site(Env env, Resources resources) {
+    this.env = env;
     this.resources = resources;
-    resourceList = memoize(() -> list(env));
+  }
 
-    yaml = memoize(() -> loadYamlConfig("_config.yml"));
+  // Parses the pages on a background thread so that the first request
+  // doesn't pay for it.
+  //
+  public void warmUp() {
+    Thread thread = new Thread(() -> {
+      try {
+        content();
+      } catch (RuntimeException e) {
+        // Will fail again, and be reported, on first access
+      }
+    }, "site-index-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
 
-    data = memoize(() -> getResourceList()
-        .stream()
-        .filter(path -> path.startsWith("_data/"))
-        .collect(toMap(path -> nameWithoutExtension(path), path -> readYaml(path)))
-    );
+  // Updates the entries for a file, or for all the files of a folder,
+  // relative to the app folder, that were created, modified or deleted.
+  //
+  public synchronized void update(String path) {
+    if (CONFIG.equals(path)) {
+      yaml = null;
+    }
 
-    pages = memoize(() -> getResourceList()
-        .stream()
-        .filter(path -> !path.startsWith("_"))
-        .map(path -> pathToMap(path))
-        .collect(toList())
-    );
+    NavigableSet<String> currentList = resourceList;
+    if (currentList == null) {
+      return;
+    }
 
-    tags = memoize(() -> {
-      Map<String, List<Map<String, Object>>> pagesPerTag = new TreeMap<>();
-      for (Map<String, Object> page : getPages()) {
-        for (String tag : tags(page)) {
-          pagesPerTag.computeIfAbsent(tag, key -> new ArrayList<>()).add(page);
-        }
-      }
-      return pagesPerTag;
-    });
+    Set<String> changedPaths;
+    try {
+      changedPaths = changedPaths(currentList, path);
+    } catch (RuntimeException e) {
+      // List again, and report the error, on next access
+      resourceList = null;
+      content = null;
+      return;
+    }
 
-    categories = memoize(() -> getPages().stream().collect(Collectors.groupingBy(page -> Site.category(page), TreeMap::new, toList())));
+    NavigableSet<String> updatedList = new TreeSet<>(currentList);
+    for (String changed : changedPaths) {
+      if (resources.exists(Paths.get(changed))) {
+        updatedList.add(changed);
+      } else {
+        updatedList.remove(changed);
+      }
+    }
+    resourceList = unmodifiableNavigableSet(updatedList);
+
+    Content currentContent = content;
+    if (currentContent != null) {
+      try {
+        content = currentContent.update(changedPaths, updatedList);
+      } catch (RuntimeException e) {
+        // Parse again, and report the error, on next access
+        content = null;
+      }
+    }
   }
 
-  private static Set<String> list(Env env) {
-    Set<String> paths = new TreeSet<>();
-
-    Path rootPath = env.appPath();
+  private Map<String, Object> configYaml() {
+    Map<String, Object> current = yaml;
+    if (current != null) {
+      return current;
+    }
 
-    try {
-      if (!env.disableClassPath()) {
-        new ClasspathScanner().getResources(rootPath).forEach(resource -> paths.add(relativePath(rootPath, Paths.get(resource))));
+    synchronized (this) {
+      if (yaml == null) {
+        yaml = loadYamlConfig(CONFIG);
       }
+      return yaml;
+    }
+  }
+
+  private NavigableSet<String> resourceList() {
+    NavigableSet<String> current = resourceList;
+    if (current != null) {
+      return current;
+    }
 
-      if (!env.disableFilesystem()) {
-        walkFileTree(rootPath, onFile(path -> paths.add(relativePath(rootPath, path))));
+    synchronized (this) {
+      if (resourceList == null) {
+        Set<String> paths = (resources.index() != null) ? resources.index().paths() : AssetIndex.list(env);
+        resourceList = unmodifiableNavigableSet(new TreeSet<>(paths));
       }
-    } catch (IOException e) {
-      // Ignore
+      return resourceList;
     }
+  }
 
-    paths.remove("");
+  private Content content() {
+    Content current = content;
+    if (current != null) {
+      return current;
+    }
 
-    return paths;
+    synchronized (this) {
+      if (content == null) {
+        content = Content.build(this, resourceList());
+      }
+      return content;
+    }
   }
 
-  private Map<String, Object> configYaml() {
-    return yaml.get();
+  private Set<String> changedPaths(NavigableSet<String> currentList, String path) {
+    Set<String> changed = new TreeSet<>();
+
+    String folderPrefix = path + "/";
+    for (String existing : currentList.tailSet(path)) {
+      if (!existing.equals(path) && !existing.startsWith(folderPrefix)) {
+        break;
+      }
+      changed.add(existing);
+    }
+
+    Path appPath = env.appPath();
+    File file = appPath.resolve(path).toFile();
+    if (file.isDirectory()) {
+      try {
+        Files.walkFileTree(file.toPath(), onFile(child -> changed.add(Resources.relativePath(appPath, child))));
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to list files in: " + path, e);
+      }
+    } else {
+      changed.add(path);
+    }
+
+    return changed;
   }
 
   public Set<String> getResourceList() {
-    return resourceList.get();
+    return resourceList();
   }
 
   public Object get(String key) {
-    return yaml.get().get(key);
+    return configYaml().get(key);
   }
 
   public <T> T getAs(String key, Class<T> type) {
@@ -115,19 +199,19 @@ public class Site {
   }
 
   public Map<String, Object> getData() {
-    return data.get();
+    return content().data;
   }
 
   public List<Map<String, Object>> getPages() {
-    return pages.get();
+    return content().pages;
   }
 
   public Map<String, List<Map<String, Object>>> getTags() {
-    return tags.get();
+    return content().tags;
   }
 
   public Map<String, List<Map<String, Object>>> getCategories() {
-    return categories.get();
+    return content().categories;
   }
 
   private Map<String, Object> pathToMap(String path) {
@@ -177,6 +261,88 @@ public class Site {
     return Strings.substringBeforeLast(Paths.get(path).getFileName().toString(), ".");
   }
 
+  private static boolean isData(String path) {
+    return path.startsWith("_data/");
+  }
+
+  private static boolean isPage(String path) {
+    return !path.startsWith("_") && ContentTypes.supportsTemplating(path);
+  }
+
+  // Data and pages, parsed from the resource list
+  //
+  private static class Content {
+    private final Site site;
+    private final Map<String, Object> dataByPath;
+    private final Map<String, Map<String, Object>> pagesByPath;
+    private final Map<String, Object> data;
+    private final List<Map<String, Object>> pages;
+    private final Map<String, List<Map<String, Object>>> tags;
+    private final Map<String, List<Map<String, Object>>> categories;
+
+    private Content(Site site, Map<String, Object> dataByPath, Map<String, Map<String, Object>> pagesByPath) {
+      this.site = site;
+      this.dataByPath = unmodifiableMap(dataByPath);
+      this.pagesByPath = unmodifiableMap(pagesByPath);
+      this.data = unmodifiableMap(data(dataByPath));
+      this.pages = unmodifiableList(new ArrayList<>(pagesByPath.values()));
+      this.tags = unmodifiableMap(tags(pages));
+      this.categories = unmodifiableMap(pages.stream().collect(Collectors.groupingBy(page -> Site.category(page), TreeMap::new, toList())));
+    }
+
+    static Content build(Site site, Set<String> resourceList) {
+      Map<String, Object> dataByPath = new TreeMap<>();
+      Map<String, Map<String, Object>> pagesByPath = new TreeMap<>();
+      for (String path : resourceList) {
+        parse(site, path, dataByPath, pagesByPath);
+      }
+
+      return new Content(site, dataByPath, pagesByPath);
+    }
+
+    // Copy on write: only the changed files are read again.
+    //
+    Content update(Set<String> changedPaths, Set<String> resourceList) {
+      Map<String, Object> dataByPath = new TreeMap<>(this.dataByPath);
+      Map<String, Map<String, Object>> pagesByPath = new TreeMap<>(this.pagesByPath);
+
+      for (String changed : changedPaths) {
+        dataByPath.remove(changed);
+        pagesByPath.remove(changed);
+
+        if (resourceList.contains(changed)) {
+          parse(site, changed, dataByPath, pagesByPath);
+        }
+      }
+
+      return new Content(site, dataByPath, pagesByPath);
+    }
+
+    private static void parse(Site site, String path, Map<String, Object> dataByPath, Map<String, Map<String, Object>> pagesByPath) {
+      if (isData(path)) {
+        dataByPath.put(path, site.readYaml(path));
+      } else if (isPage(path)) {
+        pagesByPath.put(path, site.pathToMap(path));
+      }
+    }
+
+    private static Map<String, Object> data(Map<String, Object> dataByPath) {
+      Map<String, Object> data = new HashMap<>();
+      dataByPath.forEach((path, value) -> data.put(nameWithoutExtension(path), value));
+      return data;
+    }
+
+    private static Map<String, List<Map<String, Object>>> tags(List<Map<String, Object>> pages) {
+      Map<String, List<Map<String, Object>>> pagesPerTag = new TreeMap<>();
+      for (Map<String, Object> page : pages) {
+        for (String tag : Site.tags(page)) {
+          pagesPerTag.computeIfAbsent(tag, key -> new ArrayList<>()).add(page);
+        }
+      }
+      return pagesPerTag;
+    }
+  }
+
   static enum SiteValueResolver implements ValueResolver {
     INSTANCE;
 
@@ -22,51 +22,113 @@ import java.util.*;
 import net.codestory.http.compilers.*;
 import net.codestory.http.io.*;
 import net.codestory.http.markdown.MarkdownCompiler;
+import net.codestory.http.misc.*;
 
+import com.github.jknack.handlebars.Template;
+
+// Views are parsed and compiled once, then cached by path. In dev mode,
+// a view is compiled again when its file changes.
+//
 public class ViewCompiler {
+  private static final int MAX_VIEWS = 1_000;
+
+  private final boolean prodMode;
   private final CompilerFacade compilerFacade;
   private final Resources resources;
+  private final LruCache<String, CompiledView> views;
 
   public ViewCompiler(Resources resources, CompilerFacade compilerFacade) {
+    this(false, resources, compilerFacade);
+  }
+
+  public ViewCompiler(boolean prodMode, Resources resources, CompilerFacade compilerFacade) {
+    this.prodMode = prodMode;
     this.compilerFacade = compilerFacade;
     this.resources = resources;
+    this.views = LruCache.ofSize(MAX_VIEWS, 0L);
   }
 
   public String render(String uri, Map<String, ?> keyValues) {
+    StringWriter writer = new StringWriter();
+    render(uri, keyValues, writer);
+    return writer.toString();
+  }
+
+  // Renders a view, and its layouts, straight into a writer. Layouts are
+  // rendered first, and the body of the view is rendered in place of
+  // their [[body]] slot.
+  //
+  public void render(String uri, Map<String, ?> keyValues, Writer writer) {
     Path path = resources.findExistingPath(uri);
     if (path == null) {
       throw new IllegalArgumentException("Template not found " + uri);
     }
 
     try {
-      YamlFrontMatter yamlFrontMatter = YamlFrontMatter.parse(resources.sourceFile(path));
+      CompiledView view = compiledView(path);
 
-      String content = yamlFrontMatter.getContent();
-      Map<String, Object> variables = yamlFrontMatter.getVariables();
+      Map<String, Object> variables = view.yamlFrontMatter.getVariables();
       Map<String, Object> allKeyValues = merge(variables, keyValues);
 
-      String body = compilerFacade.handlebar(content, allKeyValues);
-      if (MarkdownCompiler.supports(path)) {
-        body = MarkdownCompiler.INSTANCE.compile(body);
-      }
-
       String layout = (String) variables.get("layout");
       if (layout == null) {
-        return body;
+        writeBody(path, view, allKeyValues, writer);
+        return;
       }
 
-      String layoutContent = render("_layouts/" + layout, allKeyValues);
-      return layoutContent.replace("[[body]]", body);
+      try (BodySlotWriter layoutWriter = new BodySlotWriter(writer, () -> writeBody(path, view, allKeyValues, writer))) {
+        render("_layouts/" + layout, allKeyValues, layoutWriter);
+      }
     } catch (IOException e) {
       throw new IllegalStateException("Unable to render template", e);
     }
   }
 
+  private void writeBody(Path path, CompiledView view, Map<String, Object> keyValues, Writer writer) throws IOException {
+    if (MarkdownCompiler.supports(path)) {
+      writer.write(compilerFacade.markdown(compilerFacade.handlebar(view.template, keyValues)));
+    } else {
+      compilerFacade.handlebar(view.template, keyValues, writer);
+    }
+  }
+
+  private CompiledView compiledView(Path path) throws IOException {
+    String key = Resources.toUnixString(path);
+    long lastModified = prodMode ? 0L : lastModified(path);
+
+    CompiledView view = views.get(key);
+    if ((view == null) || (view.lastModified != lastModified)) {
+      YamlFrontMatter yamlFrontMatter = YamlFrontMatter.parse(resources.sourceFile(path));
+      Template template = compilerFacade.handlebarTemplate(yamlFrontMatter.getContent());
+
+      view = new CompiledView(yamlFrontMatter, template, lastModified);
+      views.put(key, view);
+    }
+    return view;
+  }
+
+  private long lastModified(Path path) {
+    File file = resources.file(path);
+    return (file == null) ? 0L : file.lastModified();
+  }
+
   private static Map<String, Object> merge(Map<String, ?> first, Map<String, ?> second) {
     Map<String, Object> merged = new HashMap<>();
     merged.putAll(first);
     merged.putAll(second);
-    merged.put("body", "[[body]]");
+    merged.put("body", BodySlotWriter.SLOT);
     return merged;
   }
+
+  private static class CompiledView {
+    private final YamlFrontMatter yamlFrontMatter;
+    private final Template template;
+    private final long lastModified;
+
+    private CompiledView(YamlFrontMatter yamlFrontMatter, Template template, long lastModified) {
+      this.yamlFrontMatter = yamlFrontMatter;
+      this.template = template;
+      this.lastModified = lastModified;
+    }
+  }
 }
@@ -31,11 +31,13 @@ import com.github.jknack.handlebars.Handlebars.*;
 public class AssetsHelperSource {
   private final Resources resources;
   private final CompilerFacade compilers;
+  private final PrecompiledAssets precompiled;
   private final Function<String, String> urlSupplier;
 
   public AssetsHelperSource(boolean prodMode, Resources resources, CompilerFacade compilers) {
     this.resources = resources;
     this.compilers = compilers;
+    this.precompiled = prodMode ? PrecompiledAssets.load(resources) : PrecompiledAssets.none();
     if (prodMode) {
       this.urlSupplier = new Cache<>(p -> uriWithSha1(p));
     } else {
@@ -86,6 +88,11 @@ public class AssetsHelperSource {
   }
 
   private String uriWithSha1(String uri) {
+    PrecompiledAssets.Asset asset = precompiled.get(uri);
+    if (asset != null) {
+      return uri + '?' + asset.sha1();
+    }
+
     try {
       Path path = resources.findExistingPath(uri);
       if ((path != null) && (resources.isPublic(path))) {
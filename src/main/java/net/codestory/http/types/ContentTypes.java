@@ -80,6 +80,10 @@ public class ContentTypes {
     }
   }
 
+  public static boolean isCompressible(String contentType) {
+    return contentType.startsWith("text/") || contentType.contains("javascript") || contentType.contains("json") || contentType.contains("xml");
+  }
+
   public static boolean supportsTemplating(String filename) {
     switch (extension(filename)) {
       case ".txt":
@@ -137,7 +137,7 @@ public class AnnotationsTest extends AbstractProdWebServerTest {
         .add(ResourceWithInjection.class)
     );
 
-    get("/injection/first/second").should().contain("first/second/Context/SimpleRequest/SimpleResponse/SimpleCookies");
+    get("/injection/first/second").should().contain("first/second/Context/true/true/true");
   }
 
   @Test
@@ -178,7 +178,7 @@ public class AnnotationsTest extends AbstractProdWebServerTest {
   public static class ResourceWithInjection {
     @Get("/injection/:param1/:param2")
     public String route(String param1, String param2, Context context, Request request, Response response, Cookies cookies) {
-      return String.join("/", param1, param2, context.getClass().getSimpleName(), request.getClass().getSimpleName(), response.getClass().getSimpleName(), cookies.getClass().getSimpleName());
+      return String.join("/", param1, param2, context.getClass().getSimpleName(), String.valueOf(request == context.request()), String.valueOf(response == context.response()), String.valueOf(cookies == context.cookies()));
     }
   }
 }
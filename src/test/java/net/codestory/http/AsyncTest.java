@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import static java.util.concurrent.CompletableFuture.*;
+import static java.util.concurrent.TimeUnit.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.codestory.http.annotations.*;
+import net.codestory.http.payload.*;
+import net.codestory.http.testhelpers.*;
+
+import org.junit.*;
+
+public class AsyncTest extends AbstractProdWebServerTest {
+  @Test
+  public void future_routes() {
+    configure(routes -> routes
+        .get("/hello/:name", (context, name) -> supplyAsync(() -> "Hello " + name))
+        .get("/payload", () -> supplyAsync(() -> new Payload("text/plain", "TEXT", 201)))
+        .get("/failure", () -> supplyAsync(() -> {
+          throw new IllegalArgumentException("BUG");
+        }))
+        .add(new Object() {
+          @Get("/resource")
+          @Produces("text/plain")
+          public CompletionStage<String> resource() {
+            return completedFuture("RESOURCE");
+          }
+        })
+    );
+
+    get("/hello/Bob").should().haveType("text/html").contain("Hello Bob");
+    get("/payload").should().respond(201).haveType("text/plain").contain("TEXT");
+    get("/failure").should().respond(500);
+    get("/resource").should().haveType("text/plain").contain("RESOURCE");
+  }
+
+  @Test
+  public void filters_apply_to_future_routes() {
+    configure(routes -> routes
+        .filter((uri, context, next) -> next.get().withHeader("X-Filtered", "true"))
+        .get("/", () -> supplyAsync(() -> "Hello"))
+    );
+
+    get("/").should().contain("Hello").haveHeader("X-Filtered", "true");
+  }
+
+  @Test
+  public void write_timeouts_on_the_request_executor() throws IOException {
+    ExecutorService pool = Executors.newCachedThreadPool();
+    List<Runnable> tasks = new CopyOnWriteArrayList<>();
+
+    WebServer webServer = new WebServer()
+        .configure(routes -> routes.get("/never", () -> new CompletableFuture<String>()))
+        .executeOn(task -> {
+          tasks.add(task);
+          pool.execute(task);
+        })
+        .asyncTimeout(50, MILLISECONDS)
+        .startOnRandomPort();
+
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + webServer.port() + "/never").openConnection();
+
+      assertThat(connection.getResponseCode()).isEqualTo(503);
+      assertThat(tasks).hasSize(2);
+    } finally {
+      webServer.stop();
+      pool.shutdown();
+    }
+  }
+}
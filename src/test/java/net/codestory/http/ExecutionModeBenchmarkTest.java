@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+// Wall-clock benchmark, too slow and too machine dependent for the build.
+// Remove @Ignore to run it.
+//
+@Ignore
+public class ExecutionModeBenchmarkTest {
+  static final int WORKERS = 2;
+  static final int REQUESTS = 32;
+  static final long SLEEP = 200;
+
+  private static long timeSleepingRequests(WebServer webServer) throws Exception {
+    webServer
+      .configureServer(configuration -> configuration.withWorkers(WORKERS))
+      .configure(routes -> routes.get("/sleep", () -> {
+        Thread.sleep(SLEEP);
+        return "AWAKE";
+      }))
+      .startOnRandomPort();
+
+    ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+    try {
+      List<Callable<Integer>> requests = new ArrayList<>();
+      for (int i = 0; i < REQUESTS; i++) {
+        requests.add(() -> get(webServer.port(), "/sleep"));
+      }
+
+      long start = System.nanoTime();
+      for (Future<Integer> code : clients.invokeAll(requests)) {
+        assertThat(code.get()).isEqualTo(200);
+      }
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    } finally {
+      clients.shutdownNow();
+      webServer.stop();
+    }
+  }
+
+  private static int get(int port, String uri) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + uri).openConnection();
+    try {
+      return connection.getResponseCode();
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void blocking_routes_scale_with_concurrency() throws Exception {
+    long onWorkers = timeSleepingRequests(new WebServer().executeOnWorkers());
+    long onVirtualThreads = timeSleepingRequests(new WebServer().executeOnVirtualThreads());
+
+    // Workers serve the requests in batches, threads run them all at once
+    //
+    assertThat(onWorkers).isGreaterThanOrEqualTo(REQUESTS / WORKERS * SLEEP);
+    assertThat(onVirtualThreads).isLessThan(onWorkers / 2);
+  }
+}
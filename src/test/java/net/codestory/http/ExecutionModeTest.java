@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+
+import net.codestory.http.io.*;
+
+import org.junit.*;
+
+public class ExecutionModeTest {
+  @Test
+  public void create_the_executor_again_on_restart() throws IOException {
+    WebServer webServer;
+    System.setProperty("http.execution.mode", "unbounded");
+    try {
+      webServer = new WebServer().configure(routes -> routes.get("/thread", () -> Thread.currentThread().getName()));
+    } finally {
+      System.clearProperty("http.execution.mode");
+    }
+
+    try {
+      assertThat(get(webServer.startOnRandomPort(), "/thread")).startsWith("http-request-");
+      webServer.stop();
+
+      assertThat(get(webServer.startOnRandomPort(), "/thread")).startsWith("http-request-");
+    } finally {
+      webServer.stop();
+    }
+  }
+
+  private static String get(WebServer webServer, String uri) throws IOException {
+    URLConnection connection = new URL("http://localhost:" + webServer.port() + uri).openConnection();
+    try (InputStream input = connection.getInputStream()) {
+      return InputStreams.readString(input, UTF_8);
+    }
+  }
+}
@@ -80,7 +80,7 @@ public class PostTest extends AbstractProdWebServerTest {
     );
 
     post("/get").should().respond(405);
-    post("/index.html").should().respond(405);
+    post("/index.html").should().respond(404);
   }
 
   @Test
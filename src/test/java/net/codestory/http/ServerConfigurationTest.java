@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import static org.assertj.core.api.Assertions.*;
+
+import net.codestory.http.misc.*;
+
+import org.junit.*;
+
+public class ServerConfigurationTest {
+  @Test
+  public void defaults_scale_with_cores() {
+    ServerConfiguration configuration = ServerConfiguration.of(Env.prod());
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    assertThat(configuration.workers()).isEqualTo(Math.max(8, 2 * cores));
+    assertThat(configuration.selectors()).isEqualTo(Math.max(1, cores / 4));
+  }
+
+  @Test
+  public void override() {
+    ServerConfiguration configuration = ServerConfiguration.of(Env.prod()).withWorkers(64).withSelectors(4).withBacklog(128);
+
+    assertThat(configuration.workers()).isEqualTo(64);
+    assertThat(configuration.selectors()).isEqualTo(4);
+    assertThat(configuration.backlog()).isEqualTo(128);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void reject_invalid_values() {
+    ServerConfiguration.of(Env.prod()).withWorkers(0);
+  }
+
+  @Test
+  public void start_configured_server() {
+    WebServer server = new WebServer().configureServer(configuration -> configuration.withWorkers(2).withSelectors(2)).startOnRandomPort();
+
+    try {
+      assertThat(server.port()).isPositive();
+    } finally {
+      server.stop();
+    }
+  }
+}
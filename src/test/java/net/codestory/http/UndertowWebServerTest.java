@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+
+import net.codestory.rest.*;
+
+import org.junit.*;
+
+public class UndertowWebServerTest implements FluentRestTest {
+  static final byte[] EMPTY_SETTINGS = {0, 0, 0, 0x4, 0, 0, 0, 0, 0};
+
+  static UndertowWebServer server;
+
+  @BeforeClass
+  public static void start() {
+    server = new UndertowWebServer().configure(routes -> routes
+        .get("/hello/:name", (context, name) -> "Hello " + name)
+        .get("/query", context -> context.get("key") + " " + context.cookies().value("id"))
+        .post("/form", context -> context.get("key"))
+        .post("/echo", context -> context.get("key") + " " + context.request().content())
+    ).startOnRandomPort();
+  }
+
+  @AfterClass
+  public static void stop() {
+    server.stop();
+  }
+
+  @Override
+  public int port() {
+    return server.port();
+  }
+
+  @Test
+  public void get() {
+    get("/hello/John%20Doe").should().haveType("text/html").contain("Hello John Doe");
+  }
+
+  @Test
+  public void query_and_cookies() {
+    get("/query?key=value").withHeader("Cookie", "id=Bob").should().contain("value Bob");
+  }
+
+  @Test
+  public void post_form() {
+    post("/form", "key", "posted").should().contain("posted");
+  }
+
+  @Test
+  public void content_of_a_form_after_its_fields() {
+    post("/echo", "key", "first").should().contain("first key=first");
+  }
+
+  @Test
+  public void not_found() {
+    get("/unknown").should().respond(404);
+  }
+
+  @Test
+  public void upgrade_to_http2() throws IOException {
+    try (Socket socket = connect()) {
+      write(socket, "GET /hello/h2c HTTP/1.1\r\nHost: localhost\r\nConnection: Upgrade, HTTP2-Settings\r\nUpgrade: h2c\r\nHTTP2-Settings: AAMAAABkAARAAAAAAAIAAAAA\r\n\r\n");
+
+      assertThat(readLine(socket)).isEqualTo("HTTP/1.1 101 Switching Protocols");
+    }
+  }
+
+  @Test
+  public void http2_with_prior_knowledge() throws IOException {
+    try (Socket socket = connect()) {
+      write(socket, "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n");
+      socket.getOutputStream().write(EMPTY_SETTINGS);
+
+      byte[] frameHeader = new byte[9];
+      new DataInputStream(socket.getInputStream()).readFully(frameHeader);
+
+      assertThat(frameHeader[3]).describedAs("SETTINGS frame").isEqualTo((byte) 0x4);
+    }
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket("localhost", port());
+    socket.setSoTimeout(5000);
+    return socket;
+  }
+
+  private static void write(Socket socket, String request) throws IOException {
+    socket.getOutputStream().write(request.getBytes(US_ASCII));
+    socket.getOutputStream().flush();
+  }
+
+  private static String readLine(Socket socket) throws IOException {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(), US_ASCII)).readLine();
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class CacheEntryTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File write(String content) throws IOException {
+    File file = temp.newFile();
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+    return file;
+  }
+
+  private static String repeat(String value, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(value);
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void encode_string_once() {
+    CacheEntry entry = CacheEntry.fromString("body { content: '\u00e9' }");
+
+    assertThat(entry.toBytes()).isSameAs(entry.toBytes()).isEqualTo("body { content: '\u00e9' }".getBytes(UTF_8));
+    assertThat(entry.toByteBuffer().array()).isSameAs(entry.toBytes());
+    assertThat(entry.content()).isEqualTo("body { content: '\u00e9' }").isSameAs(entry.content());
+  }
+
+  @Test
+  public void read_small_file() throws IOException {
+    CacheEntry entry = CacheEntry.fromFile(write("var a = 42;"));
+
+    assertThat(entry.toByteBuffer().isDirect()).isFalse();
+    assertThat(entry.content()).isEqualTo("var a = 42;").isSameAs(entry.content());
+  }
+
+  @Test
+  public void map_large_file() throws IOException {
+    String content = repeat("var a = '\u00e9';\n", 2000);
+
+    CacheEntry entry = CacheEntry.fromFile(write(content));
+
+    assertThat(entry.toByteBuffer().isDirect()).isTrue();
+    assertThat(entry.toByteBuffer().remaining()).isEqualTo(content.getBytes(UTF_8).length);
+    assertThat(entry.toBytes()).isEqualTo(content.getBytes(UTF_8));
+    assertThat(entry.content()).isEqualTo(content);
+  }
+
+  @Test
+  public void serialize_mapped_entry_as_bytes() throws Exception {
+    String content = repeat("body {}\n", 4000);
+    CacheEntry entry = CacheEntry.fromFile(write(content));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(entry);
+    }
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertThat(((CacheEntry) input.readObject()).content()).isEqualTo(content);
+    }
+  }
+}
@@ -20,17 +20,25 @@ import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.*;
 
 import org.junit.*;
+import org.junit.rules.*;
 
 public class CompilersTest {
   static Env env = Env.prod();
   static Resources resources = new Resources(env);
   static Compilers compilers = new Compilers(env, resources);
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private String compile(String filename, String content) throws IOException {
     return compilers.compile(new SourceFile(Paths.get(filename), content)).content();
   }
@@ -57,6 +65,7 @@ public class CompilersTest {
 
     // Fill cache
     String javascript = compile("test.coffee", "a=42");
+    DiskCache.awaitWrites();
 
     assertThat(cacheFile).exists();
     assertThat(javascript).contains("var a;\n\na = 42");
@@ -87,4 +96,140 @@ public class CompilersTest {
 
     assertThat(cached).isEqualTo(compiled);
   }
+
+  @Test
+  public void invalidate_less_when_an_import_changes() throws IOException {
+    File app = temp.newFolder();
+    Env devEnv = new Env(app.getAbsolutePath(), false, true, false, false);
+    Compilers devCompilers = new Compilers(devEnv, new Resources(devEnv));
+    SourceFile style = new SourceFile(Paths.get("style.less"), "@import 'variables.less';\nbody { color: @color; } /* " + UUID.randomUUID() + " */");
+
+    Files.write(app.toPath().resolve("variables.less"), "@color: red;".getBytes());
+    assertThat(devCompilers.compile(style).content()).contains("color: red");
+
+    Files.write(app.toPath().resolve("variables.less"), "@color: blue;".getBytes());
+    assertThat(devCompilers.compile(style).content()).contains("color: blue");
+  }
+
+  @Test
+  public void cache_until_an_import_changes() throws IOException {
+    File app = temp.newFolder();
+    Files.write(app.toPath().resolve("partial.txt"), "v1".getBytes());
+
+    Env devEnv = new Env(app.getAbsolutePath(), false, true, false, false);
+    Compilers devCompilers = new Compilers(devEnv, new Resources(devEnv));
+    AtomicInteger compilations = new AtomicInteger();
+    devCompilers.register(() -> new Compiler() {
+      @Override
+      public String compile(SourceFile sourceFile) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String compile(SourceFile sourceFile, Consumer<Path> dependencies) {
+        dependencies.accept(Paths.get("partial.txt"));
+        return "compiled " + compilations.incrementAndGet();
+      }
+    }, ".html", ".partials");
+
+    SourceFile sourceFile = new SourceFile(Paths.get("file.partials"), UUID.randomUUID().toString());
+
+    assertThat(devCompilers.compile(sourceFile).content()).isEqualTo("compiled 1");
+    assertThat(devCompilers.compile(sourceFile).content()).isEqualTo("compiled 1");
+
+    Files.write(app.toPath().resolve("partial.txt"), "v2".getBytes());
+
+    assertThat(devCompilers.compile(sourceFile).content()).isEqualTo("compiled 2");
+    assertThat(devCompilers.compile(sourceFile).content()).isEqualTo("compiled 2");
+  }
+
+  @Test
+  public void compile_only_once() throws Exception {
+    AtomicInteger compilations = new AtomicInteger();
+    compilers.register(() -> (sourceFile) -> {
+      compilations.incrementAndGet();
+      sleep(200);
+      return sourceFile.getSource();
+    }, ".html", ".slow");
+
+    SourceFile sourceFile = new SourceFile(Paths.get("file.slow"), UUID.randomUUID().toString());
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<CacheEntry>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> compilers.compile(sourceFile)));
+      }
+
+      for (Future<CacheEntry> result : results) {
+        assertThat(result.get().content()).isEqualTo(sourceFile.getSource());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(compilations.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void bound_memory_cache() throws IOException {
+    Env smallEnv;
+    System.setProperty("http.compiler.cache.size", "100");
+    try {
+      smallEnv = Env.prod();
+    } finally {
+      System.clearProperty("http.compiler.cache.size");
+    }
+
+    Compilers smallCompilers = new Compilers(smallEnv, resources);
+    smallCompilers.register(() -> (sourceFile) -> sourceFile.getSource() + sourceFile.getSource(), ".html", ".twice");
+
+    for (int i = 0; i < 5; i++) {
+      smallCompilers.compile(new SourceFile(Paths.get("file.twice"), "0123456789012345678" + i));
+    }
+    smallCompilers.compile(new SourceFile(Paths.get("file.twice"), "01234567890123456784"));
+
+    assertThat(smallCompilers.cacheSize()).isEqualTo(2);
+    assertThat(smallCompilers.cacheWeight()).isEqualTo(80);
+    assertThat(smallCompilers.cacheEvictionCount()).isEqualTo(3);
+    assertThat(smallCompilers.cacheHitRatio()).isEqualTo(1.0 / 6);
+  }
+
+  @Test
+  public void cache_markdown() {
+    String markdown = "This is **bold** " + UUID.randomUUID();
+    int compiledAssets = compilers.cacheSize();
+    File cacheFile = Paths.get(System.getProperty("user.home"), ".code-story", "cache", "V6", "prod", "md", Sha1.of(markdown)).toFile();
+
+    CacheEntry html = compilers.compileMarkdown(markdown);
+    DiskCache.awaitWrites();
+
+    assertThat(html.content()).isEqualTo("<p>This is <strong>bold</strong> " + markdown.substring(17) + "</p>\n");
+    assertThat(compilers.compileMarkdown(markdown)).isSameAs(html);
+    assertThat(compilers.cacheSize()).isEqualTo(compiledAssets);
+    assertThat(cacheFile).doesNotExist();
+  }
+
+  @Test
+  public void cache_markdown_files_on_disk() {
+    String markdown = "This is *a file* " + UUID.randomUUID();
+    SourceFile sourceFile = new SourceFile(Paths.get("_includes/file.md"), markdown);
+    File cacheFile = Paths.get(System.getProperty("user.home"), ".code-story", "cache", "V6", "prod", "md", Sha1.of(markdown)).toFile();
+
+    CacheEntry html = compilers.compileMarkdown(sourceFile);
+    DiskCache.awaitWrites();
+
+    assertThat(html.content()).isEqualTo("<p>This is <em>a file</em> " + markdown.substring(17) + "</p>\n");
+    assertThat(compilers.compileMarkdown(sourceFile)).isSameAs(html);
+    assertThat(cacheFile).exists();
+    assertThat(new Compilers(env, resources).compileMarkdown(sourceFile).content()).isEqualTo(html.content());
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
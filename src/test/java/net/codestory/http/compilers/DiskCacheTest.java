@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class DiskCacheTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private DiskCache diskCache(File folder) {
+    return new DiskCache(folder, "V1", true, Long.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  @Test
+  public void write_in_background() throws IOException {
+    File folder = temp.newFolder();
+    DiskCache diskCache = diskCache(folder);
+
+    diskCache.put("sha1", ".css", "body {}");
+    assertThat(diskCache.get("sha1", ".css").content()).isEqualTo("body {}");
+
+    DiskCache.awaitWrites();
+
+    Path entry = folder.toPath().resolve("V1/prod/css/sha1");
+    assertThat(new String(Files.readAllBytes(entry), UTF_8)).isEqualTo("body {}");
+    assertThat(entry.getParent().toFile().list()).containsOnly("sha1");
+    assertThat(diskCache(folder).get("sha1", ".css").content()).isEqualTo("body {}");
+  }
+
+  @Test
+  public void prune_old_entries() throws IOException {
+    File folder = temp.newFolder();
+    Path recent = write(folder, "V2/prod/css/recent", 10, 0);
+    Path old = write(folder, "V1/prod/css/old", 10, 10);
+    Path tmp = write(folder, "V2/prod/css/entry123.tmp", 10, 1);
+
+    DiskCache.prune(folder, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(5));
+
+    assertThat(Files.exists(recent)).isTrue();
+    assertThat(Files.exists(old)).isFalse();
+    assertThat(Files.exists(tmp)).isFalse();
+  }
+
+  @Test
+  public void prune_least_recently_used_entries() throws IOException {
+    File folder = temp.newFolder();
+    Path newest = write(folder, "V1/prod/js/newest", 100, 1);
+    Path older = write(folder, "V1/prod/js/older", 100, 2);
+    Path oldest = write(folder, "V1/prod/css/oldest", 100, 3);
+
+    DiskCache.prune(folder, 250, Long.MAX_VALUE);
+
+    assertThat(Files.exists(newest)).isTrue();
+    assertThat(Files.exists(older)).isTrue();
+    assertThat(Files.exists(oldest)).isFalse();
+  }
+
+  private static Path write(File folder, String path, int size, int ageInDays) throws IOException {
+    Path file = folder.toPath().resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[size]);
+    file.toFile().setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ageInDays) - 1000L);
+    return file;
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+// Wall-clock benchmark, too slow and too machine dependent for the build.
+// Remove @Ignore to run it.
+//
+@Ignore
+public class NashornCompilerBenchmarkTest {
+  static final int COMPILATIONS = 64;
+
+  static CoffeeCompiler compiler;
+
+  @BeforeClass
+  public static void warmUp() throws Exception {
+    compiler = new CoffeeCompiler(false);
+    compile(1);
+  }
+
+  private static double compile(int threads) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<String>> compilations = new ArrayList<>();
+      for (int i = 0; i < COMPILATIONS; i++) {
+        String source = "square = (x) -> x * x\nlife = square " + i;
+        compilations.add(() -> compiler.compile(new SourceFile(Paths.get("file.coffee"), source)));
+      }
+
+      long start = System.nanoTime();
+      for (Future<String> js : executor.invokeAll(compilations)) {
+        assertThat(js.get()).contains("life = square(");
+      }
+      long duration = System.nanoTime() - start;
+
+      return COMPILATIONS * 1_000_000_000.0 / duration;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void throughput_with_concurrent_compilations() throws Exception {
+    double oneThread = compile(1);
+    double fourThreads = compile(4);
+    double sixteenThreads = compile(16);
+
+    // Contention should never make things much slower than a single engine
+    //
+    assertThat(fourThreads).isGreaterThan(oneThread / 2);
+    assertThat(sixteenThreads).isGreaterThan(oneThread / 2);
+  }
+}
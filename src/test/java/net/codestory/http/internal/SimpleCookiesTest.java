@@ -77,6 +77,25 @@ public class SimpleCookiesTest {
     assertThat(order.quantity).isEqualTo(12);
   }
 
+  @Test
+  public void parse_json_cookie_once() {
+    when(request.getCookie("name")).thenReturn(new Cookie("name", "{\"name\": \"Bob\", \"quantity\": 42}"));
+
+    Order order = cookies.value("name", Order.class);
+
+    assertThat(cookies.value("name", Order.class)).isSameAs(order);
+    assertThat(cookies.value("name", new Order())).isSameAs(order);
+    verify(request, times(1)).getCookie("name");
+  }
+
+  @Test
+  public void look_up_missing_json_cookie_once() {
+    assertThat(cookies.value("name", Order.class)).isNull();
+    assertThat(cookies.value("name", Order.class)).isNull();
+
+    verify(request, times(1)).getCookie("name");
+  }
+
   static class Order {
     String name;
     int quantity;
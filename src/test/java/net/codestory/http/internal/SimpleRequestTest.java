@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.internal;
+
+import static java.util.Collections.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.*;
+import org.simpleframework.http.*;
+
+public class SimpleRequestTest {
+  Request request = mock(Request.class);
+
+  SimpleRequest simpleRequest = new SimpleRequest(request);
+
+  @Test
+  public void wrap_cookies_once() {
+    assertThat(simpleRequest.cookies()).isSameAs(simpleRequest.cookies());
+  }
+
+  @Test
+  public void wrap_query_once() {
+    when(request.getQuery()).thenReturn(mock(Query.class));
+
+    assertThat(simpleRequest.query()).isSameAs(simpleRequest.query());
+    verify(request, times(1)).getQuery();
+  }
+
+  @Test
+  public void wrap_parts_once() {
+    when(request.getParts()).thenReturn(singletonList(mock(Part.class)));
+
+    assertThat(simpleRequest.parts()).hasSize(1).isSameAs(simpleRequest.parts());
+    verify(request, times(1)).getParts();
+  }
+}
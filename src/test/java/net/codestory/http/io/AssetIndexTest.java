@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.*;
+
+import net.codestory.http.misc.*;
+
+import org.junit.*;
+
+public class AssetIndexTest {
+  static Resources resources = new Resources(Env.prod());
+
+  @Test
+  public void index_files_in_prod_mode() {
+    AssetIndex index = resources.index();
+
+    assertThat(index.paths()).contains("index.html", "assets/style.css", "_layouts/default.html", "404.html");
+    assertThat(index.contains("/index.html")).isTrue();
+    assertThat(index.contains("assets")).isFalse();
+  }
+
+  @Test
+  public void no_index_in_dev_mode() {
+    assertThat(new Resources(Env.dev()).index()).isNull();
+  }
+
+  @Test
+  public void describe_assets() {
+    AssetIndex.Asset asset = resources.index().get("assets/style.css");
+
+    assertThat(asset.path()).isEqualTo("assets/style.css");
+    assertThat(asset.contentType()).isEqualTo("text/css;charset=UTF-8");
+    assertThat(asset.size()).isPositive();
+    assertThat(asset.lastModified()).isPositive();
+  }
+
+  @Test
+  public void find_template_extension() {
+    AssetIndex index = resources.index();
+
+    assertThat(index.templateExtension("/index")).isEqualTo(".html");
+    assertThat(index.templateExtension("/index.html")).isEmpty();
+    assertThat(index.templateExtension("/hello")).isEqualTo(".md");
+    assertThat(index.templateExtension("/unknown")).isNull();
+  }
+
+  @Test
+  public void find_existing_path_from_index() {
+    assertThat(resources.findExistingPath("/").toString()).isEqualTo(Paths.get("/index.html").toString());
+    assertThat(resources.findExistingPath("/goodbye").toString()).isEqualTo(Paths.get("/goodbye.markdown").toString());
+    assertThat((Object) resources.findExistingPath("/unknown")).isNull();
+  }
+}
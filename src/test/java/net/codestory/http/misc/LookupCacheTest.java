@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class LookupCacheTest {
+  AtomicInteger lookups = new AtomicInteger();
+
+  LookupCache<String, String> cache = new LookupCache<>(key -> {
+    lookups.incrementAndGet();
+    return key.startsWith("/found") ? "FOUND" : "";
+  }, String::isEmpty, 10, 2, 0);
+
+  @Test
+  public void cache_hits_and_misses() {
+    assertThat(cache.apply("/found")).isEqualTo("FOUND");
+    assertThat(cache.apply("/found")).isEqualTo("FOUND");
+    assertThat(cache.apply("/unknown")).isEmpty();
+    assertThat(cache.apply("/unknown")).isEmpty();
+
+    assertThat(lookups.get()).isEqualTo(2);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.negativeHitCount()).isEqualTo(1);
+    assertThat(cache.delegateCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void misses_dont_evict_hits() {
+    cache.apply("/found");
+    for (int i = 0; i < 100; i++) {
+      cache.apply("/random" + i);
+    }
+    cache.apply("/found");
+
+    assertThat(lookups.get()).isEqualTo(101);
+  }
+
+  @Test
+  public void invalidate() {
+    cache.apply("/found");
+    cache.invalidateAll();
+    cache.apply("/found");
+
+    assertThat(lookups.get()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class LruCacheTest {
+  AtomicLong now = new AtomicLong();
+
+  @Test
+  public void evict_least_recently_used() {
+    LruCache<String, String> cache = new LruCache<>(2, 0, value -> 1L, now::incrementAndGet);
+
+    cache.put("A", "a");
+    cache.put("B", "b");
+    cache.get("A");
+    cache.put("C", "c");
+
+    assertThat(cache.get("A")).isEqualTo("a");
+    assertThat(cache.get("B")).isNull();
+    assertThat(cache.get("C")).isEqualTo("c");
+    assertThat(cache.evictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void evict_by_weight() {
+    LruCache<String, String> cache = new LruCache<>(10, 0, value -> value.length(), now::incrementAndGet);
+
+    cache.put("A", "12345");
+    cache.put("B", "123456");
+    cache.put("C", "12345678901");
+
+    assertThat(cache.get("A")).isNull();
+    assertThat(cache.get("B")).isEqualTo("123456");
+    assertThat(cache.get("C")).isNull();
+    assertThat(cache.weight()).isEqualTo(6);
+  }
+
+  @Test
+  public void expire() {
+    LruCache<String, String> cache = new LruCache<>(10, 1000, value -> 1L, now::get);
+
+    cache.put("A", "a");
+    now.addAndGet(999_000_000L);
+    assertThat(cache.get("A")).isEqualTo("a");
+
+    now.addAndGet(2_000_000L);
+    assertThat(cache.get("A")).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void count_hits_and_misses() {
+    LruCache<String, String> cache = LruCache.ofSize(10, 0);
+
+    cache.computeIfAbsent("A", key -> "a");
+    cache.computeIfAbsent("A", key -> "other");
+    cache.invalidateAll();
+    cache.computeIfAbsent("A", key -> "again");
+
+    assertThat(cache.get("A")).isEqualTo("again");
+    assertThat(cache.hitCount()).isEqualTo(2);
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void keep_weight_consistent_under_concurrent_access() throws Exception {
+    LruCache<Integer, String> cache = new LruCache<>(100, 0, value -> value.length());
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    for (int thread = 0; thread < 8; thread++) {
+      pool.execute(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 10_000; i++) {
+          int key = random.nextInt(200);
+          if (cache.get(key) == null) {
+            cache.put(key, "value" + key);
+          } else if (random.nextInt(10) == 0) {
+            cache.invalidate(key);
+          }
+        }
+      });
+    }
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.MINUTES);
+
+    long weight = 0;
+    for (int key = 0; key < 200; key++) {
+      String value = cache.get(key);
+      if (value != null) {
+        weight += value.length();
+      }
+    }
+
+    assertThat(cache.weight()).isEqualTo(weight);
+    assertThat(cache.weight()).isLessThanOrEqualTo(100);
+    assertThat(cache.evictionCount()).isPositive();
+  }
+}
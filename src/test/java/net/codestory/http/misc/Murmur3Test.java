@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.*;
+
+public class Murmur3Test {
+  @Test
+  public void murmur3() {
+    assertThat(Murmur3.of("".getBytes(UTF_8))).isEqualTo("00000000000000000000000000000000");
+    assertThat(Murmur3.of("hell".getBytes(UTF_8))).isEqualTo("67f8103e694299624753ebba820bdb92");
+    assertThat(Murmur3.of("hello".getBytes(UTF_8))).isEqualTo("029bbd41b3a7d8cb191dae486a901e5b");
+    assertThat(Murmur3.of("The quick brown fox jumps over the lazy dog".getBytes(UTF_8))).isEqualTo("6c1b07bc7bbc4be347939ac4a93c437a");
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+
+import net.codestory.http.compilers.*;
+import net.codestory.http.io.*;
+import net.codestory.http.templating.helpers.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class PreCompileTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File app;
+  Env env;
+
+  @Before
+  public void createApp() throws IOException {
+    app = temp.newFolder("app");
+    env = new Env(app.getAbsolutePath(), true, true, false, false);
+
+    StringBuilder coffee = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      coffee.append("value").append(i).append(" = ").append(i).append("\n");
+    }
+
+    write("js/app.coffee", coffee.toString());
+    write("js/small.coffee", "life=42");
+    write("css/style.less", "body { h1 { color: red; } }");
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = app.toPath().resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(UTF_8));
+  }
+
+  private String read(String path) throws IOException {
+    return new String(Files.readAllBytes(app.toPath().resolve(path)), UTF_8);
+  }
+
+  @Test
+  public void compile_assets() throws IOException {
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    assertThat(read("js/app.js")).contains("value99 = 99;");
+    assertThat(read("js/small.js")).contains("life = 42;");
+    assertThat(read("css/style.css")).contains("body h1");
+  }
+
+  @Test
+  public void gzip_large_outputs() throws IOException {
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    assertThat(Files.exists(app.toPath().resolve("js/app.js.gz"))).isTrue();
+    assertThat(Files.exists(app.toPath().resolve("js/small.js.gz"))).isFalse();
+  }
+
+  @Test
+  public void write_manifest() throws IOException {
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    PrecompiledAssets manifest = PrecompiledAssets.load(new Resources(env));
+
+    assertThat(manifest.assets()).containsOnlyKeys("js/app.js", "js/small.js", "css/style.css");
+    assertThat(manifest.get("/js/small.js").sha1()).isEqualTo(Sha1.of(Files.readAllBytes(app.toPath().resolve("js/small.js"))));
+    assertThat(manifest.get("js/small.js").size()).isEqualTo(new File(app, "js/small.js").length());
+  }
+
+  @Test
+  public void skip_outputs_newer_than_source() throws IOException {
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    write("js/small.js", "// already compiled");
+    Files.setLastModifiedTime(app.toPath().resolve("js/small.js"), FileTime.fromMillis(System.currentTimeMillis() + 60_000L));
+
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    assertThat(read("js/small.js")).isEqualTo("// already compiled");
+  }
+
+  @Test
+  public void compile_again_when_an_import_changes() throws IOException {
+    write("css/style.less", "@import 'css/colors.less';\nbody { h1 { color: @title; } }");
+    write("css/colors.less", "@title: red;");
+
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    assertThat(read("css/style.css")).contains("red");
+
+    write("css/colors.less", "@title: blue;");
+    Files.setLastModifiedTime(app.toPath().resolve("css/colors.less"), FileTime.fromMillis(System.currentTimeMillis() + 60_000L));
+
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    assertThat(read("css/style.css")).contains("blue");
+  }
+
+  @Test
+  public void use_manifest_for_asset_urls() throws IOException {
+    new PreCompile(env).run(app.getAbsolutePath());
+
+    Resources resources = new Resources(env);
+    AssetsHelperSource assetsHelper = new AssetsHelperSource(true, resources, new CompilerFacade(env, resources));
+    String sha1 = PrecompiledAssets.load(resources).get("js/small.js").sha1();
+
+    assertThat(assetsHelper.script("js/small").toString()).isEqualTo("<script src=\"js/small.js?" + sha1 + "\"></script>");
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public class AsyncPayloadTest {
+  @Test
+  public void detect_pending_payloads() {
+    assertThat(AsyncPayload.isAsync(new Payload(new CompletableFuture<>()))).isTrue();
+    assertThat(AsyncPayload.isAsync(new Payload("Hello"))).isFalse();
+  }
+
+  @Test
+  public void keep_headers_and_cookies_of_pending_payload() throws Exception {
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    Payload pending = new Payload("text/plain", future).withHeader("X-Filter", "true").withCookie("name", "Bob");
+
+    CompletableFuture<Payload> resolved = AsyncPayload.resolve(pending, 10_000);
+    future.complete(new Payload("TEXT").withCode(201).withHeader("X-Route", "true"));
+
+    Payload payload = resolved.get();
+    assertThat(payload.rawContent()).isEqualTo("TEXT");
+    assertThat(payload.rawContentType()).isEqualTo("text/plain");
+    assertThat(payload.code()).isEqualTo(201);
+    assertThat(payload.headers()).containsEntry("X-Filter", "true").containsEntry("X-Route", "true");
+    assertThat(payload.cookies()).hasSize(1);
+  }
+
+  @Test
+  public void unwrap_failures() throws Exception {
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    CompletableFuture<Payload> resolved = AsyncPayload.resolve(new Payload(future.thenApply(value -> value)), 10_000);
+    future.completeExceptionally(new IllegalArgumentException("BUG"));
+
+    try {
+      resolved.get();
+      fail("Should have failed");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  public void service_unavailable_on_timeout() throws Exception {
+    Payload payload = AsyncPayload.resolve(new Payload(new CompletableFuture<>()), 10).get();
+
+    assertThat(payload.code()).isEqualTo(503);
+  }
+}
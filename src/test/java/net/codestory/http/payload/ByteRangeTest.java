@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.*;
+
+public class ByteRangeTest {
+  @Test
+  public void single_range() {
+    assertThat(ByteRange.parse("bytes=0-99", 1000)).containsExactly(new ByteRange(0, 99));
+    assertThat(ByteRange.parse("bytes=500-", 1000)).containsExactly(new ByteRange(500, 999));
+    assertThat(ByteRange.parse("bytes=-100", 1000)).containsExactly(new ByteRange(900, 999));
+    assertThat(ByteRange.parse("bytes=900-2000", 1000)).containsExactly(new ByteRange(900, 999));
+    assertThat(ByteRange.parse("bytes=-2000", 1000)).containsExactly(new ByteRange(0, 999));
+  }
+
+  @Test
+  public void multiple_ranges() {
+    assertThat(ByteRange.parse("bytes=0-9, 20-29,-5", 100)).containsExactly(new ByteRange(0, 9), new ByteRange(20, 29), new ByteRange(95, 99));
+  }
+
+  @Test
+  public void unsatisfiable() {
+    assertThat(ByteRange.parse("bytes=1000-", 1000)).isEmpty();
+    assertThat(ByteRange.parse("bytes=-0", 1000)).isEmpty();
+  }
+
+  @Test
+  public void ignore_invalid_headers() {
+    assertThat(ByteRange.parse("items=0-9", 1000)).isNull();
+    assertThat(ByteRange.parse("bytes=9-0", 1000)).isNull();
+    assertThat(ByteRange.parse("bytes=a-9", 1000)).isNull();
+    assertThat(ByteRange.parse("bytes=-", 1000)).isNull();
+    assertThat(ByteRange.parse("bytes=10", 1000)).isNull();
+  }
+
+  @Test
+  public void content_range() {
+    assertThat(new ByteRange(0, 99).contentRange(1000)).isEqualTo("bytes 0-99/1000");
+    assertThat(new ByteRange(0, 99).length()).isEqualTo(100);
+    assertThat(ByteRange.unsatisfiedRange(1000)).isEqualTo("bytes */1000");
+  }
+}
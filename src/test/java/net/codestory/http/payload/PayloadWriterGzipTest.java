@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.*;
+import static net.codestory.http.constants.Headers.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import net.codestory.http.*;
+import net.codestory.http.compilers.*;
+import net.codestory.http.io.*;
+import net.codestory.http.misc.*;
+import net.codestory.http.templating.*;
+
+import org.junit.*;
+import org.mockito.*;
+
+public class PayloadWriterGzipTest {
+  static Env env = Env.prod();
+  static Resources resources = new Resources(env);
+  static Site site = new Site(env, resources);
+  static CompilerFacade compilerFacade = new CompilerFacade(env, resources);
+
+  static String LARGE_TEXT = String.join("", Collections.nCopies(200, "Hello World!"));
+
+  Request request = mock(Request.class);
+  Response response = mock(Response.class);
+  OutputStream outputStream = mock(OutputStream.class);
+
+  @Before
+  public void setupContext() throws IOException {
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip, deflate");
+    when(response.outputStream()).thenReturn(outputStream);
+  }
+
+  private PayloadWriter writer(Resources resources) {
+    return new PayloadWriter(request, response, env, site, resources, compilerFacade);
+  }
+
+  @Test
+  public void gzip_large_bodies() throws IOException {
+    writer(resources).write(new Payload("text/plain", LARGE_TEXT));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setHeader(VARY, ACCEPT_ENCODING);
+
+    ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+    verify(outputStream).write(bytes.capture());
+    assertThat(gunzip(bytes.getValue())).isEqualTo(LARGE_TEXT);
+  }
+
+  @Test
+  public void cache_gzipped_variants() throws IOException {
+    PayloadWriter writer = writer(resources);
+    String text = LARGE_TEXT + "cached";
+
+    writer.write(new Payload("text/plain", text));
+    long hits = writer.gzipVariants().hitCount();
+    writer.write(new Payload("text/plain", text));
+
+    assertThat(writer.gzipVariants().hitCount()).isEqualTo(hits + 1);
+  }
+
+  @Test
+  public void dont_gzip_small_bodies() throws IOException {
+    writer(resources).write(new Payload("text/plain", "Hello"));
+
+    verify(response, never()).setHeader(CONTENT_ENCODING, "gzip");
+    verify(outputStream).write("Hello".getBytes(UTF_8));
+  }
+
+  @Test
+  public void dont_gzip_compressed_content_types() throws IOException {
+    byte[] image = LARGE_TEXT.getBytes(UTF_8);
+
+    writer(resources).write(new Payload("image/png", image));
+
+    verify(response, never()).setHeader(CONTENT_ENCODING, "gzip");
+    verify(outputStream).write(image);
+  }
+
+  @Test
+  public void dont_gzip_if_not_accepted() throws IOException {
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip;q=0, identity");
+
+    writer(resources).write(new Payload("text/plain", LARGE_TEXT));
+
+    verify(response, never()).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setHeader(VARY, ACCEPT_ENCODING);
+  }
+
+  @Test
+  public void serve_precompressed_sibling() throws IOException {
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip, br");
+
+    File brotli = File.createTempFile("style", ".css.br");
+    brotli.deleteOnExit();
+    Files.write(brotli.toPath(), new byte[] {1, 2, 3});
+
+    Resources withSibling = spy(resources);
+    doReturn(brotli).when(withSibling).file(Paths.get("assets/style.css.br"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+
+    writer(withSibling).write(new Payload(Paths.get("assets/style.css")));
+
+    verify(response).setHeader(CONTENT_TYPE, "text/css;charset=UTF-8");
+    verify(response).setHeader(CONTENT_ENCODING, "br");
+    verify(response).setHeader(VARY, ACCEPT_ENCODING);
+    verify(response).setContentLength(3);
+    assertThat(bytes.toByteArray()).containsExactly(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void skip_stale_precompressed_sibling() throws IOException {
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip, br");
+
+    File css = File.createTempFile("style", ".css");
+    css.deleteOnExit();
+    Files.write(css.toPath(), "body {}".getBytes(UTF_8));
+
+    File brotli = File.createTempFile("style", ".css.br");
+    brotli.deleteOnExit();
+    Files.write(brotli.toPath(), new byte[] {1, 2, 3});
+    brotli.setLastModified(css.lastModified() - 10_000L);
+
+    Resources withSibling = spy(resources);
+    doReturn(css).when(withSibling).file(Paths.get("assets/style.css"));
+    doReturn(brotli).when(withSibling).file(Paths.get("assets/style.css.br"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+
+    writer(withSibling).write(new Payload(Paths.get("assets/style.css")));
+
+    verify(response, never()).setHeader(CONTENT_ENCODING, "br");
+    assertThat(new String(bytes.toByteArray(), UTF_8)).isEqualTo("body {}");
+  }
+
+  @Test
+  public void gzipped_variants_per_env() {
+    PayloadWriter otherServer = new PayloadWriter(request, response, Env.prod(), site, resources, compilerFacade);
+
+    assertThat(writer(resources).gzipVariants()).isSameAs(writer(resources).gzipVariants());
+    assertThat(otherServer.gzipVariants()).isNotSameAs(writer(resources).gzipVariants());
+  }
+
+  private static String gunzip(byte[] gzipped) throws IOException {
+    try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      return InputStreams.readString(input, UTF_8);
+    }
+  }
+}
@@ -19,17 +19,23 @@ import net.codestory.http.Cookie;
 import net.codestory.http.Cookies;
 import net.codestory.http.Request;
 import net.codestory.http.Response;
+import net.codestory.http.compilers.CacheEntry;
 import net.codestory.http.compilers.CompilerFacade;
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.Env;
+import net.codestory.http.misc.Md5;
+import net.codestory.http.templating.ModelAndView;
 import net.codestory.http.templating.Site;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.file.Paths;
 import java.util.Optional;
 
@@ -204,6 +210,184 @@ public class PayloadWriterTest {
     verify(response).setStatus(NOT_MODIFIED);
   }
 
+  @Test
+  public void transfer_file() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+
+    writer.write(new Payload(Paths.get("assets/style.css")));
+
+    verify(response).setHeader(CONTENT_TYPE, "text/css;charset=UTF-8");
+    verify(response).setContentLength(4);
+    verify(response, never()).outputStream();
+    assertThat(bytes.toString("UTF-8")).isEqualTo("* {}");
+  }
+
+  @Test
+  public void file_not_modified() throws IOException {
+    when(response.channel()).thenReturn(Channels.newChannel(new ByteArrayOutputStream()));
+    writer.write(new Payload(Paths.get("assets/style.css")));
+
+    ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq(ETAG), etag.capture());
+
+    reset(response);
+    when(request.header(IF_NONE_MATCH)).thenReturn(etag.getValue());
+    writer.write(new Payload(Paths.get("assets/style.css")));
+
+    verify(response).setStatus(NOT_MODIFIED);
+    verify(response, never()).channel();
+  }
+
+  @Test
+  public void single_range() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+    when(request.header(RANGE)).thenReturn("bytes=1-3");
+
+    writer.write(new Payload("0123456789".getBytes(UTF_8)));
+
+    verify(response).setStatus(PARTIAL_CONTENT);
+    verify(response).setHeader(ACCEPT_RANGES, "bytes");
+    verify(response).setHeader(CONTENT_RANGE, "bytes 1-3/10");
+    verify(response).setContentLength(3);
+    assertThat(bytes.toString("UTF-8")).isEqualTo("123");
+  }
+
+  @Test
+  public void multiple_ranges() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+    when(request.header(RANGE)).thenReturn("bytes=0-1,-2");
+
+    writer.write(new Payload("0123456789".getBytes(UTF_8)));
+
+    ArgumentCaptor<String> contentType = ArgumentCaptor.forClass(String.class);
+    verify(response, times(2)).setHeader(eq(CONTENT_TYPE), contentType.capture());
+    String boundary = contentType.getValue().substring("multipart/byteranges; boundary=".length());
+
+    assertThat(bytes.toString("UTF-8")).isEqualTo(
+      "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes 0-1/10\r\n\r\n01" +
+        "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes 8-9/10\r\n\r\n89" +
+        "\r\n--" + boundary + "--\r\n");
+    verify(response).setContentLength(bytes.size());
+  }
+
+  @Test
+  public void range_not_satisfiable() throws IOException {
+    when(request.header(RANGE)).thenReturn("bytes=20-");
+
+    writer.write(new Payload("0123456789".getBytes(UTF_8)));
+
+    verify(response).setStatus(REQUESTED_RANGE_NOT_SATISFIABLE);
+    verify(response).setHeader(CONTENT_RANGE, "bytes */10");
+  }
+
+  @Test
+  public void ignore_range_if_etag_changed() throws IOException {
+    when(request.header(RANGE)).thenReturn("bytes=1-3");
+    when(request.header(IF_RANGE)).thenReturn("\"oldetag\"");
+
+    byte[] data = "0123456789".getBytes(UTF_8);
+    writer.write(new Payload(data));
+
+    verify(response, never()).setStatus(PARTIAL_CONTENT);
+    verify(outputStream).write(data);
+  }
+
+  @Test
+  public void range_on_file() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+    when(request.header(RANGE)).thenReturn("bytes=2-");
+
+    writer.write(new Payload(Paths.get("assets/style.css")));
+
+    verify(response).setStatus(PARTIAL_CONTENT);
+    verify(response).setHeader(CONTENT_RANGE, "bytes 2-3/4");
+    assertThat(bytes.toString("UTF-8")).isEqualTo("{}");
+  }
+
+  @Test
+  public void stream_json_without_etag() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(bytes);
+
+    writer.write(new Payload(new Person("NAME", 42)).withEtagMode(EtagMode.NONE));
+
+    verify(response).setHeader(CONTENT_TYPE, "application/json;charset=UTF-8");
+    verify(response, never()).setHeader(eq(ETAG), anyString());
+    verify(response, never()).setContentLength(anyLong());
+    assertThat(bytes.toString("UTF-8")).isEqualTo("{\"name\":\"NAME\",\"age\":42}");
+  }
+
+  @Test
+  public void stream_view_without_etag() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(bytes);
+
+    writer.write(new Payload(ModelAndView.of("pageYaml.html")).withEtagMode(EtagMode.NONE));
+
+    verify(response).setHeader(CONTENT_TYPE, "text/html;charset=UTF-8");
+    verify(response, never()).setHeader(eq(ETAG), anyString());
+    verify(response, never()).setContentLength(anyLong());
+    assertThat(bytes.toString("UTF-8")).contains("PREFIX_LAYOUT<div>_PREFIX_TEXT_SUFFIX_</div>SUFFIX_LAYOUT");
+  }
+
+  @Test
+  public void stream_json_with_weak_etag() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(bytes);
+
+    writer.write(new Payload(new Person("NAME", 42)).withEtagMode(EtagMode.WEAK));
+
+    verify(response).setHeader(ETAG, "W/" + Md5.of("{\"name\":\"NAME\",\"age\":42}".getBytes(UTF_8)));
+    assertThat(bytes.toString("UTF-8")).isEqualTo("{\"name\":\"NAME\",\"age\":42}");
+  }
+
+  @Test
+  public void weak_etag_not_modified() throws IOException {
+    when(request.header(IF_NONE_MATCH)).thenReturn("W/" + Md5.of("{\"name\":\"NAME\",\"age\":42}".getBytes(UTF_8)));
+
+    writer.write(new Payload(new Person("NAME", 42)).withEtagMode(EtagMode.WEAK));
+
+    verify(response).setStatus(NOT_MODIFIED);
+    verify(response, never()).outputStream();
+  }
+
+  @Test
+  public void memoize_etag_of_cache_entries() throws IOException {
+    CacheEntry cacheEntry = mock(CacheEntry.class);
+    when(cacheEntry.toBytes()).thenReturn("Hello".getBytes(UTF_8));
+    when(cacheEntry.toByteBuffer()).thenReturn(ByteBuffer.wrap("Hello".getBytes(UTF_8)));
+
+    writer.write(new Payload(cacheEntry));
+
+    when(request.header(IF_NONE_MATCH)).thenReturn("8b1a9953c4611296a827abf8c47804d7");
+    writer.write(new Payload(cacheEntry));
+
+    verify(response).setStatus(NOT_MODIFIED);
+    verify(cacheEntry, times(1)).toBytes();
+  }
+
+  @Test
+  public void write_direct_buffers_to_channel() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(bytes));
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(5);
+    direct.put("Hello".getBytes(UTF_8)).flip();
+    CacheEntry cacheEntry = mock(CacheEntry.class);
+    when(cacheEntry.toBytes()).thenReturn("Hello".getBytes(UTF_8));
+    when(cacheEntry.toByteBuffer()).thenReturn(direct);
+
+    writer.write(new Payload(cacheEntry));
+
+    verify(response).setContentLength(5);
+    verify(response, never()).outputStream();
+    assertThat(new String(bytes.toByteArray(), UTF_8)).isEqualTo("Hello");
+  }
+
   @Test
   public void head() throws IOException {
     when(request.method()).thenReturn("HEAD");
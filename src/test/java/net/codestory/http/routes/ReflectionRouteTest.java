@@ -19,6 +19,8 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import net.codestory.http.*;
+import net.codestory.http.annotations.*;
+import net.codestory.http.payload.*;
 
 import org.junit.*;
 
@@ -46,4 +48,33 @@ public class ReflectionRouteTest {
 
     assertThat(parameters).containsExactly("param", request);
   }
+
+  @Test
+  public void etag_mode() throws Exception {
+    assertThat(etagMode("strong")).isEqualTo(EtagMode.STRONG);
+    assertThat(etagMode("weak")).isEqualTo(EtagMode.WEAK);
+    assertThat(etagMode("none")).isEqualTo(EtagMode.NONE);
+  }
+
+  private EtagMode etagMode(String methodName) throws NoSuchMethodException {
+    ReflectionRoute route = new ReflectionRoute(Resource::new, Resource.class.getDeclaredMethod(methodName));
+
+    return ((Payload) route.body(context, new String[0])).etagMode();
+  }
+
+  static class Resource {
+    Object strong() {
+      return "STRONG";
+    }
+
+    @WeakEtag
+    Object weak() {
+      return "WEAK";
+    }
+
+    @NoEtag
+    Object none() {
+      return "NONE";
+    }
+  }
 }
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static net.codestory.http.constants.HttpStatus.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import net.codestory.http.*;
+import net.codestory.http.payload.*;
+
+import org.junit.*;
+
+public class RouteTreeTest {
+  RouteSorter routes = new RouteSorter();
+
+  private Payload apply(String method, String uri) throws Exception {
+    Request request = mock(Request.class);
+    Context context = mock(Context.class);
+    when(context.uri()).thenReturn(uri);
+    when(context.method()).thenReturn(method);
+    when(context.request()).thenReturn(request);
+
+    return new RouteTree(routes.getSortedRoutes()).apply(uri, context);
+  }
+
+  private void add(String method, String uriPattern, AnyRoute route) {
+    routes.addUserRoute(new RouteWithPattern(method, uriPattern, route));
+  }
+
+  @Test
+  public void match_fixed_uris() throws Exception {
+    add("GET", "/", (context, params) -> "INDEX");
+    add("GET", "/hello", (context, params) -> "HELLO");
+    add("GET", "/hello/world", (context, params) -> "WORLD");
+
+    assertThat(apply("GET", "/").rawContent()).isEqualTo("INDEX");
+    assertThat(apply("GET", "/hello").rawContent()).isEqualTo("HELLO");
+    assertThat(apply("GET", "/hello/world").rawContent()).isEqualTo("WORLD");
+    assertThat(apply("GET", "/unknown").code()).isEqualTo(NOT_FOUND);
+  }
+
+  @Test
+  public void match_parameters() throws Exception {
+    add("GET", "/hello/:name", (context, params) -> "Hello " + params[0]);
+    add("GET", "/hello/:name/aged/:age", (context, params) -> params[0] + " is " + params[1]);
+
+    assertThat(apply("GET", "/hello/Bob").rawContent()).isEqualTo("Hello Bob");
+    assertThat(apply("GET", "/hello/Bob/aged/42").rawContent()).isEqualTo("Bob is 42");
+    assertThat(apply("GET", "/hello//aged/42").rawContent()).isEqualTo(" is 42");
+    assertThat(apply("GET", "/hello/").code()).isEqualTo(NOT_FOUND);
+  }
+
+  @Test
+  public void fixed_routes_come_first() throws Exception {
+    add("GET", "/:param", (context, params) -> "PARAM");
+    add("GET", "/foo", (context, params) -> "FIXED");
+
+    assertThat(apply("GET", "/foo").rawContent()).isEqualTo("FIXED");
+    assertThat(apply("GET", "/bar").rawContent()).isEqualTo("PARAM");
+  }
+
+  @Test
+  public void first_route_wins() throws Exception {
+    add("GET", "/", (context, params) -> "FIRST");
+    add("GET", "/", (context, params) -> "SECOND");
+
+    assertThat(apply("GET", "/").rawContent()).isEqualTo("FIRST");
+  }
+
+  @Test
+  public void get_routes_serve_head() throws Exception {
+    add("GET", "/", (context, params) -> "GET");
+
+    assertThat(apply("HEAD", "/").rawContent()).isEqualTo("GET");
+  }
+
+  @Test
+  public void method_not_allowed() throws Exception {
+    add("GET", "/", (context, params) -> "GET");
+    add("POST", "/action", (context, params) -> "POST");
+
+    assertThat(apply("POST", "/").code()).isEqualTo(METHOD_NOT_ALLOWED);
+    assertThat(apply("GET", "/action").code()).isEqualTo(METHOD_NOT_ALLOWED);
+    assertThat(apply("POST", "/action").rawContent()).isEqualTo("POST");
+  }
+
+  @Test
+  public void list_allowed_methods() throws Exception {
+    add("GET", "/", (context, params) -> "GET");
+    add("PUT", "/", (context, params) -> "PUT");
+
+    assertThat(apply("POST", "/").headers()).containsEntry("Allow", "GET, HEAD, PUT");
+  }
+
+  @Test
+  public void only_probe_routes_for_the_method() throws Exception {
+    Route staticRoute = mock(Route.class);
+    when(staticRoute.matchMethod("GET")).thenReturn(true);
+    when(staticRoute.matchUri("/index.html")).thenReturn(true);
+    routes.addStaticRoute(staticRoute);
+    add("POST", "/action", (context, params) -> "POST");
+
+    assertThat(apply("POST", "/action").rawContent()).isEqualTo("POST");
+    assertThat(apply("POST", "/index.html").code()).isEqualTo(NOT_FOUND);
+    assertThat(apply("PUT", "/unknown").code()).isEqualTo(NOT_FOUND);
+    verify(staticRoute, never()).matchUri(anyString());
+  }
+
+  @Test
+  public void redirect_to_trailing_slash() throws Exception {
+    add("GET", "/section/", (context, params) -> "SECTION");
+
+    Payload payload = apply("GET", "/section");
+
+    assertThat(payload.code()).isEqualTo(SEE_OTHER);
+    assertThat(payload.headers()).containsEntry("Location", "/section/");
+    assertThat(apply("POST", "/section").code()).isEqualTo(METHOD_NOT_ALLOWED);
+  }
+
+  @Test
+  public void catch_all_routes_come_last() throws Exception {
+    add("GET", "/hello", (context, params) -> "HELLO");
+    routes.addCatchAllRoute(new CatchAllRoute("GET", (NoParamRouteWithContext) context -> "ANY"));
+
+    assertThat(apply("GET", "/hello").rawContent()).isEqualTo("HELLO");
+    assertThat(apply("GET", "/other").rawContent()).isEqualTo("ANY");
+    assertThat(apply("POST", "/other").code()).isEqualTo(METHOD_NOT_ALLOWED);
+  }
+
+  @Test
+  public void methods_of_the_routes() throws Exception {
+    add("PATCH", "/item", (context, params) -> "PATCHED");
+    routes.addCatchAllRoute(new CatchAllRoute("PATCH", (NoParamRouteWithContext) context -> "ANY"));
+
+    assertThat(apply("PATCH", "/item").rawContent()).isEqualTo("PATCHED");
+    assertThat(apply("PATCH", "/other").rawContent()).isEqualTo("ANY");
+    assertThat(apply("GET", "/other").headers()).containsEntry("Allow", "PATCH");
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2013-2014 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.management.*;
+
+import org.junit.*;
+
+// Allocations depend on the JVM and on what the JIT manages to eliminate,
+// so the thresholds are only meaningful on a known JVM. Remove @Ignore to
+// run it.
+//
+@Ignore
+public class UriParserAllocationTest {
+  private static final int WARMUP = 50_000;
+  private static final int ITERATIONS = 200_000;
+
+  private static Object blackhole;
+
+  @Test
+  public void no_parameter() {
+    long bytes = bytesPerRequest(new UriParser("/hello/world"), "/hello/world");
+
+    assertThat(bytes).isLessThan(32);
+  }
+
+  @Test
+  public void two_parameters() {
+    long bytes = bytesPerRequest(new UriParser("/hello/:name/aged/:age"), "/hello/Bob/aged/42");
+
+    assertThat(bytes).isLessThan(256);
+  }
+
+  @Test
+  public void four_parameters() {
+    long bytes = bytesPerRequest(new UriParser("/:a/:b/:c/:d"), "/alpha/beta/gamma/delta");
+
+    assertThat(bytes).isLessThan(512);
+  }
+
+  private static long bytesPerRequest(UriParser parser, String uri) {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+    long threadId = Thread.currentThread().getId();
+
+    for (int i = 0; i < WARMUP; i++) {
+      request(parser, uri);
+    }
+
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      request(parser, uri);
+    }
+    long after = threads.getThreadAllocatedBytes(threadId);
+
+    return (after - before) / ITERATIONS;
+  }
+
+  private static void request(UriParser parser, String uri) {
+    if (parser.matches(uri)) {
+      blackhole = parser.params(uri, null);
+    }
+  }
+}
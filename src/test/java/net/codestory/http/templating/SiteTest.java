@@ -15,24 +15,31 @@
  */
 package net.codestory.http.templating;
 
+import static java.nio.charset.StandardCharsets.*;
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.*;
 
 import org.junit.*;
+import org.junit.rules.*;
 
 public class SiteTest {
   static Env env = Env.prod();
   static Site site = new Site(env, new Resources(env));
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void pages() {
     List<Map<String, Object>> pages = site.getPages();
 
-    assertThat(pages).hasSize(35);
+    assertThat(pages).hasSize(25);
   }
 
   @Test
@@ -40,7 +47,7 @@ public class SiteTest {
     Map<String, List<Map<String, Object>>> tags = site.getTags();
 
     assertThat(tags).hasSize(3);
-    assertThat(tags.get("")).hasSize(33);
+    assertThat(tags.get("")).hasSize(23);
     assertThat(tags.get("scala")).hasSize(2);
     assertThat(tags.get("java")).hasSize(1);
   }
@@ -50,7 +57,7 @@ public class SiteTest {
     Map<String, List<Map<String, Object>>> categories = site.getCategories();
 
     assertThat(categories).hasSize(3);
-    assertThat(categories.get("")).hasSize(33);
+    assertThat(categories.get("")).hasSize(23);
     assertThat(categories.get("post")).hasSize(1);
     assertThat(categories.get("test")).hasSize(1);
   }
@@ -72,6 +79,76 @@ public class SiteTest {
     assertThat(config.name).isEqualTo("Bob");
   }
 
+  @Test
+  public void update_changed_files_only() throws IOException {
+    File root = temp.newFolder("app");
+    write(root, "index.md", "---\ntags: java\n---\nHello");
+    write(root, "_data/members.yml", "- Bob");
+
+    Env tempEnv = new Env(root.getAbsolutePath(), false, true, false, false);
+    Site tempSite = new Site(tempEnv, new Resources(tempEnv));
+
+    Map<String, Object> index = tempSite.getPages().get(0);
+    assertThat(tempSite.getTags()).containsOnlyKeys("java");
+
+    write(root, "posts/first.md", "---\ntags: scala\ncategory: post\n---\nFirst");
+    tempSite.update("posts");
+
+    assertThat(tempSite.getPages()).hasSize(2);
+    assertThat(tempSite.getPages().get(0)).isSameAs(index);
+    assertThat(tempSite.getTags()).containsOnlyKeys("java", "scala");
+    assertThat(tempSite.getCategories()).containsOnlyKeys("", "post");
+
+    write(root, "_data/members.yml", "- Bob\n- Joe");
+    tempSite.update("_data/members.yml");
+
+    assertThat((List) tempSite.getData().get("members")).hasSize(2);
+
+    new File(root, "index.md").delete();
+    tempSite.update("index.md");
+
+    assertThat(tempSite.getPages()).hasSize(1);
+    assertThat(tempSite.getResourceList()).containsOnly("_data/members.yml", "posts/first.md");
+  }
+
+  @Test
+  public void only_templates_are_pages() throws IOException {
+    File root = temp.newFolder("app");
+    write(root, "index.md", "Hello");
+    write(root, "logo.png", "---\n[\n---\n");
+
+    Env tempEnv = new Env(root.getAbsolutePath(), false, true, false, false);
+    Site tempSite = new Site(tempEnv, new Resources(tempEnv));
+
+    assertThat(tempSite.getResourceList()).containsOnly("index.md", "logo.png");
+    assertThat(tempSite.getPages()).hasSize(1);
+    assertThat(tempSite.getPages().get(0).get("name")).isEqualTo("index");
+  }
+
+  @Test
+  public void read_config_without_parsing_pages() throws IOException {
+    File root = temp.newFolder("app");
+    write(root, "_config.yml", "title: Blog");
+    write(root, "broken.md", "---\n[\n---\nBroken");
+
+    Env tempEnv = new Env(root.getAbsolutePath(), false, true, false, false);
+    Site tempSite = new Site(tempEnv, new Resources(tempEnv));
+
+    assertThat(tempSite.get("title")).isEqualTo("Blog");
+    assertThat(tempSite.getResourceList()).containsOnly("_config.yml", "broken.md");
+
+    write(root, "_config.yml", "title: News");
+    tempSite.update("_config.yml");
+
+    assertThat(tempSite.get("title")).isEqualTo("News");
+  }
+
+  private static void write(File root, String path, String content) throws IOException {
+    File file = new File(root, path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+  }
+
   private static class Config {
     public String greeting;
     public String name;
@@ -16,8 +16,12 @@
 package net.codestory.http.templating;
 
 import static java.util.Collections.*;
+import static java.nio.charset.StandardCharsets.*;
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 import net.codestory.http.compilers.*;
@@ -25,6 +29,7 @@ import net.codestory.http.io.Resources;
 import net.codestory.http.misc.*;
 
 import org.junit.*;
+import org.junit.rules.*;
 
 public class ViewCompilerTest {
   static Env env = Env.prod();
@@ -32,6 +37,9 @@ public class ViewCompilerTest {
   static CompilerFacade compilerFacade = new CompilerFacade(env, resources);
   static ViewCompiler viewCompiler = new ViewCompiler(resources, compilerFacade);
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   String render(String name, Map<String, Object> model) {
     return viewCompiler.render(name, model);
   }
@@ -136,4 +144,33 @@ public class ViewCompilerTest {
   private static String ignoreLineEndings(String text) {
     return text.replaceAll("[\\n\\r]", "");
   }
+
+  @Test
+  public void compile_views_once_in_prod_mode() throws IOException {
+    Resources spiedResources = spy(resources);
+    ViewCompiler prodViewCompiler = new ViewCompiler(true, spiedResources, compilerFacade);
+
+    assertThat(prodViewCompiler.render("1variable.txt", singletonMap("name", "Bob"))).isEqualTo("Hello Bob");
+    assertThat(prodViewCompiler.render("1variable.txt", singletonMap("name", "Joe"))).isEqualTo("Hello Joe");
+
+    verify(spiedResources, times(1)).sourceFile(Paths.get("1variable.txt"));
+  }
+
+  @Test
+  public void compile_changed_views_again_in_dev_mode() throws IOException {
+    File app = temp.newFolder();
+    File view = new File(app, "hello.txt");
+    Files.write(view.toPath(), "Hello [[name]]".getBytes(UTF_8));
+
+    Env devEnv = new Env(app.getAbsolutePath(), false, true, false, false);
+    Resources devResources = new Resources(devEnv);
+    ViewCompiler devViewCompiler = new ViewCompiler(false, devResources, new CompilerFacade(devEnv, devResources));
+
+    assertThat(devViewCompiler.render("hello.txt", singletonMap("name", "Bob"))).isEqualTo("Hello Bob");
+
+    Files.write(view.toPath(), "Bye [[name]]".getBytes(UTF_8));
+    view.setLastModified(view.lastModified() + 2000L);
+
+    assertThat(devViewCompiler.render("hello.txt", singletonMap("name", "Bob"))).isEqualTo("Bye Bob");
+  }
 }